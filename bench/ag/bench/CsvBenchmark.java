@@ -0,0 +1,56 @@
+package ag.bench;
+
+import ag.flatfile.ParserUtil;
+import ag.flatfile.csv.CsvMap;
+import ag.flatfile.csv.CsvReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvBenchmark {
+
+    /**
+     * narrow: 100k rows of 4 columns, wide: 5k rows of 100 columns.
+     */
+    @Param({"narrow", "wide"})
+    public String shape;
+
+    @Param({"false", "true"})
+    public boolean isQuoted;
+
+    private byte[] csv;
+
+    @Setup
+    public void setup() {
+        csv = "narrow".equals(shape)
+                ? DataGenerator.csv(100_000, 4, isQuoted)
+                : DataGenerator.csv(5_000, 100, isQuoted);
+    }
+
+    @Benchmark
+    public CsvMap csvMap() throws IOException, ParseException {
+        return new CsvMap(csv);
+    }
+
+    /**
+     * Streams the rows without keeping them, the parse cost without the table.
+     */
+    @Benchmark
+    public void csvReader(Blackhole blackhole) throws IOException, ParseException {
+        CsvReader reader = new CsvReader(ParserUtil.toReader(csv));
+        ArrayList<String> row;
+        while (null != (row = reader.readRow())) {
+            blackhole.consume(row);
+        }
+    }
+}
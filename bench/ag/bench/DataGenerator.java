@@ -0,0 +1,144 @@
+package ag.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates the benchmark inputs. The data is built from a fixed seed, so every run and every machine parses
+ * exactly the same bytes and results can be compared against a baseline.
+ */
+public final class DataGenerator {
+
+    private static final long SEED = 0x5EED;
+    private static final String WORDS = "alpha beta gamma delta epsilon zeta eta theta iota kappa lambda mu";
+
+    private DataGenerator() {
+    }
+
+    /**
+     * @param isQuoted true to quote every value and include separators, escaped quotes and line breaks in them
+     */
+    public static byte[] csv(int rows, int columns, boolean isQuoted) {
+        Random random = new Random(SEED);
+        StringBuilder out = new StringBuilder(rows * columns * 12);
+        for (int c = 0; c < columns; c++) {
+            out.append(c > 0 ? "," : "").append("column").append(c);
+        }
+        out.append('\n');
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                if (c > 0) {
+                    out.append(',');
+                }
+                if (!isQuoted) {
+                    out.append(0 == c % 2 ? random.nextInt(1_000_000) : word(random));
+                } else if (0 == random.nextInt(8)) {
+                    out.append('"').append(word(random)).append(",\"\"").append(word(random))
+                            .append("\"\"\n").append(word(random)).append('"');
+                } else {
+                    out.append('"').append(word(random)).append(' ').append(word(random)).append('"');
+                }
+            }
+            out.append('\n');
+        }
+        return bytes(out);
+    }
+
+    /**
+     * An array of small objects with string, number, boolean and null members.
+     */
+    public static byte[] flatJson(int objects) {
+        Random random = new Random(SEED);
+        StringBuilder out = new StringBuilder(objects * 120);
+        out.append('[');
+        for (int i = 0; i < objects; i++) {
+            out.append(i > 0 ? ",\n" : "\n")
+                    .append("{\"id\": ").append(i)
+                    .append(", \"name\": \"").append(word(random)).append(' ').append(word(random))
+                    .append("\", \"active\": ").append(random.nextBoolean())
+                    .append(", \"parent\": null, \"tags\": [\"").append(word(random)).append("\", \"")
+                    .append(word(random)).append("\"]}");
+        }
+        return bytes(out.append("\n]"));
+    }
+
+    /**
+     * Objects and arrays nested depth levels deep, repeated until about the given number of values exist.
+     */
+    public static byte[] deepJson(int depth, int values) {
+        Random random = new Random(SEED);
+        StringBuilder out = new StringBuilder(values * 24);
+        out.append('[');
+        for (int written = 0, branch = 0; written < values; branch++) {
+            out.append(branch > 0 ? "," : "");
+            for (int d = 0; d < depth; d++) {
+                out.append(0 == d % 2 ? "{\"level" + d + "\": " : "[");
+            }
+            out.append('"').append(word(random)).append('"');
+            for (int d = depth - 1; d >= 0; d--) {
+                out.append(0 == d % 2 ? "}" : ", " + random.nextInt(100) + "]");
+            }
+            written += depth;
+        }
+        return bytes(out.append(']'));
+    }
+
+    /**
+     * Rows of integers and decimals, the literal parsing path.
+     */
+    public static byte[] numberJson(int rows, int columns) {
+        Random random = new Random(SEED);
+        StringBuilder out = new StringBuilder(rows * columns * 10);
+        out.append('[');
+        for (int r = 0; r < rows; r++) {
+            out.append(r > 0 ? ",\n[" : "\n[");
+            for (int c = 0; c < columns; c++) {
+                out.append(c > 0 ? ", " : "");
+                if (0 == c % 2) {
+                    out.append(random.nextInt() >> 8);
+                } else {
+                    out.append(random.nextInt(100_000) / 100.0);
+                }
+            }
+            out.append(']');
+        }
+        return bytes(out.append("\n]"));
+    }
+
+    /**
+     * A catalog of items with attributes, nested elements, entity references and a comment now and then.
+     */
+    public static byte[] xml(int items) {
+        Random random = new Random(SEED);
+        StringBuilder out = new StringBuilder(items * 200);
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<catalog>\n");
+        for (int i = 0; i < items; i++) {
+            if (0 == i % 100) {
+                out.append("  <!-- items from ").append(i).append(" -->\n");
+            }
+            out.append("  <item id=\"").append(i).append("\" type=\"").append(word(random)).append("\">\n")
+                    .append("    <name>").append(word(random)).append(" &amp; ").append(word(random))
+                    .append("</name>\n")
+                    .append("    <price currency=\"EUR\">").append(random.nextInt(100_000) / 100.0)
+                    .append("</price>\n")
+                    .append("    <description>").append(word(random)).append(' ').append(word(random))
+                    .append(" &lt;").append(word(random)).append("&gt;</description>\n")
+                    .append("    <stock/>\n")
+                    .append("  </item>\n");
+        }
+        return bytes(out.append("</catalog>\n"));
+    }
+
+    private static String word(Random random) {
+        int start = random.nextInt(WORDS.length() - 6);
+        while (start > 0 && ' ' != WORDS.charAt(start - 1)) {
+            start--;
+        }
+        int end = WORDS.indexOf(' ', start);
+        return WORDS.substring(start, -1 == end ? WORDS.length() : end);
+    }
+
+    private static byte[] bytes(StringBuilder text) {
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package ag.bench;
+
+import ag.flatfile.ParserUtil;
+import ag.flatfile.json.JsonObject;
+import ag.flatfile.json.JsonParser;
+import ag.flatfile.json.JsonStreamReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    /**
+     * flat: 20k small objects, deep: values nested 64 levels deep, numbers: 10k rows of 20 numbers.
+     */
+    @Param({"flat", "deep", "numbers"})
+    public String shape;
+
+    private final JsonParser parser = new JsonParser();
+    private byte[] json;
+    private JsonObject parsed;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (shape) {
+            case "flat":
+                json = DataGenerator.flatJson(20_000);
+                break;
+            case "deep":
+                json = DataGenerator.deepJson(64, 50_000);
+                break;
+            case "numbers":
+                json = DataGenerator.numberJson(10_000, 20);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown json shape: " + shape);
+        }
+        parsed = parser.parse(json);
+    }
+
+    @Benchmark
+    public JsonObject parse() throws IOException {
+        return parser.parse(json);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return parsed.toJson();
+    }
+
+    /**
+     * Reads the elements of the top-level array one at a time.
+     */
+    @Benchmark
+    public void stream(Blackhole blackhole) throws IOException {
+        try (JsonStreamReader reader = new JsonStreamReader(ParserUtil.toReader(json))) {
+            JsonObject value;
+            while (null != (value = reader.next())) {
+                blackhole.consume(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ag.bench;
+
+import ag.logger.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging to a discarding stream, so only the cost of the logger itself is measured: formatting, locking and,
+ * in async mode, the hand-off to the writer thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerBenchmark {
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    private Logger log;
+    private int counter = 0;
+
+    @Setup
+    public void setup() {
+        log = Logger.addLogger("bench-" + mode, OutputStream.nullOutputStream());
+        log.setLevel(Logger.Level.INFO);
+        if ("async".equals(mode)) {
+            log.enableAsync(new Logger.AsyncConfig().overflowPolicy(Logger.OverflowPolicy.BLOCK));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        log.disableAsync();
+    }
+
+    @Benchmark
+    public void message() {
+        log.info("Parsed the input file");
+    }
+
+    @Benchmark
+    public void pattern() {
+        log.info("Parsed {} rows from {}", counter++, "input.csv");
+    }
+
+    /**
+     * A level that is switched off, which should cost next to nothing.
+     */
+    @Benchmark
+    public void disabled() {
+        log.debug("Parsed {} rows from {}", counter++, "input.csv");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void contended() {
+        log.info("Parsed the input file");
+    }
+}
@@ -0,0 +1,83 @@
+package ag.bench;
+
+import ag.flatfile.CharClass;
+import ag.flatfile.CharScanner;
+import ag.flatfile.ParserUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The input path every parser shares: decoding through one of the ParserUtil readers and scanning the chars
+ * with a CharScanner, without building anything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserUtilBenchmark {
+
+    private static final CharClass separators = CharClass.of(",\n\"");
+
+    private byte[] csv;
+    private String text;
+
+    @Setup
+    public void setup() {
+        csv = DataGenerator.csv(100_000, 4, false);
+        text = new String(csv, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long byteArray() throws IOException {
+        return scan(ParserUtil.toReader(csv));
+    }
+
+    @Benchmark
+    public long byteBuffer() throws IOException {
+        return scan(ParserUtil.toReader(ByteBuffer.wrap(csv)));
+    }
+
+    @Benchmark
+    public long inputStream() throws IOException {
+        return scan(ParserUtil.toReader(new ByteArrayInputStream(csv)));
+    }
+
+    @Benchmark
+    public long string() throws IOException {
+        return scan(ParserUtil.toStringReader(text));
+    }
+
+    /**
+     * Reads one char at a time, the slow path of the scanner.
+     */
+    @Benchmark
+    public long charByChar() throws IOException {
+        CharScanner scanner = new CharScanner(ParserUtil.toReader(csv));
+        long separatorCount = 0;
+        int c;
+        while (-1 != (c = scanner.read())) {
+            if (separators.contains(c)) {
+                separatorCount++;
+            }
+        }
+        return separatorCount;
+    }
+
+    private static long scan(Reader reader) throws IOException {
+        CharScanner scanner = new CharScanner(reader);
+        long separatorCount = 0;
+        while (-1 != scanner.skipUntil(separators)) {
+            scanner.read();
+            separatorCount++;
+        }
+        return separatorCount;
+    }
+}
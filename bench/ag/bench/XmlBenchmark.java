@@ -0,0 +1,63 @@
+package ag.bench;
+
+import ag.flatfile.ParserUtil;
+import ag.flatfile.xml.Entity;
+import ag.flatfile.xml.XmlParser;
+import ag.flatfile.xml.XmlStreamReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlBenchmark {
+
+    @Param({"1000", "50000"})
+    public int items;
+
+    private final XmlParser parser = new XmlParser();
+    private byte[] xml;
+    private Blackhole sink;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        xml = DataGenerator.xml(items);
+        sink = blackhole;
+        parser.on("/catalog/item", entity -> sink.consume(entity));
+    }
+
+    @Benchmark
+    public Entity parse() throws IOException {
+        return parser.parse(xml);
+    }
+
+    /**
+     * Builds only the item subtrees, one at a time.
+     */
+    @Benchmark
+    public void scan() throws IOException {
+        parser.scan(xml);
+    }
+
+    /**
+     * The pull parser on its own, reading every event and its text.
+     */
+    @Benchmark
+    public void streamReader(Blackhole blackhole) throws IOException {
+        XmlStreamReader reader = new XmlStreamReader(ParserUtil.toReader(xml));
+        XmlStreamReader.Event event;
+        while (XmlStreamReader.Event.END_DOCUMENT != (event = reader.next())) {
+            if (XmlStreamReader.Event.TEXT == event) {
+                blackhole.consume(reader.getTextCharacters());
+            } else if (XmlStreamReader.Event.START_ELEMENT == event) {
+                blackhole.consume(reader.getAttributeCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * JMH benchmarks for the parsers and the logger, on inputs from {@link ag.bench.DataGenerator}.
+ * <p>
+ * The project has no build file, so compile these sources together with {@code src} against jmh-core and run the
+ * jmh-generator-annprocess annotation processor, then start {@code org.openjdk.jmh.Main}. Add {@code -prof gc}
+ * for allocation rates:
+ * <pre>
+ * java -cp bench-classes:jmh-libs/* org.openjdk.jmh.Main "ag.bench.Json.*" -prof gc -rff json.csv
+ * </pre>
+ * Each benchmark reports throughput and sampled latency percentiles. Keep the result files of a run as the
+ * baseline for the next performance change.
+ */
+package ag.bench;
@@ -0,0 +1,84 @@
+package ag.flatfile;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A Reader that decodes characters straight out of a ByteBuffer into the caller's char array. The bytes are
+ * never copied into an intermediate array or String, which makes it suitable for payloads that are already
+ * held in memory (network buffers, byte arrays, mapped files).
+ * <p>
+ * The source buffer's position and limit are left untouched; reading happens on a duplicate.
+ */
+public class ByteBufferReader extends Reader {
+
+    private final ByteBuffer in;
+    private final CharsetDecoder decoder;
+    private final CharBuffer spare = CharBuffer.allocate(2);
+    private boolean isFlushed = false;
+
+    public ByteBufferReader(ByteBuffer buffer) {
+        this(buffer, StandardCharsets.UTF_8);
+    }
+
+    public ByteBufferReader(ByteBuffer buffer, Charset charset) {
+        this.in = buffer.duplicate();
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        spare.flip();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+        Objects.checkFromIndexSize(off, len, cbuf.length);
+        if (0 == len) {
+            return 0;
+        }
+        int n = 0;
+        while (spare.hasRemaining() && n < len) {
+            cbuf[off + n++] = spare.get();
+        }
+        if (n < len) {
+            CharBuffer out = CharBuffer.wrap(cbuf, off + n, len - n);
+            decode(out);
+            n += out.position() - (off + n);
+        }
+        if (0 == n && !isFlushed) {
+            // the destination was too small to hold a surrogate pair, decode into the spare buffer instead
+            spare.clear();
+            decode(spare);
+            spare.flip();
+            if (spare.hasRemaining()) {
+                cbuf[off] = spare.get();
+                n = 1;
+            }
+        }
+        return 0 == n && isFlushed ? -1 : n;
+    }
+
+    private void decode(CharBuffer out) {
+        if (isFlushed) {
+            return;
+        }
+        if (decoder.decode(in, out, true).isUnderflow() && decoder.flush(out).isUnderflow()) {
+            isFlushed = true;
+        }
+    }
+
+    @Override
+    public boolean ready() {
+        return spare.hasRemaining() || in.hasRemaining();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the buffer belongs to the caller
+    }
+}
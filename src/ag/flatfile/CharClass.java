@@ -0,0 +1,58 @@
+package ag.flatfile;
+
+/**
+ * A set of characters backed by a lookup table, used by {@link CharScanner} to find where a run of characters
+ * ends with a single array access per character. The table covers ascii; above that only whitespace can be a
+ * member.
+ */
+public final class CharClass {
+
+    private static final int TABLE_SIZE = 128;
+
+    public static final CharClass WHITESPACE = new CharClass(new boolean[TABLE_SIZE], true);
+
+    private final boolean[] table;
+    private final boolean isWhitespace;
+
+    private CharClass(boolean[] table, boolean isWhitespace) {
+        this.table = table;
+        this.isWhitespace = isWhitespace;
+        if (isWhitespace) {
+            for (int c = 0; c < TABLE_SIZE; c++) {
+                table[c] |= Character.isWhitespace(c);
+            }
+        }
+    }
+
+    /**
+     * @param chars the ascii characters of the class
+     */
+    public static CharClass of(String chars) {
+        boolean[] table = new boolean[TABLE_SIZE];
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c >= TABLE_SIZE) {
+                throw new IllegalArgumentException("CharClass characters must be ascii, found '" + c + "'");
+            }
+            table[c] = true;
+        }
+        return new CharClass(table, false);
+    }
+
+    /**
+     * @return a class with the characters of this one plus all whitespace
+     */
+    public CharClass withWhitespace() {
+        return new CharClass(table.clone(), true);
+    }
+
+    /**
+     * @return true if the character is in the class. -1 (end of input) never is.
+     */
+    public boolean contains(int c) {
+        if (c < TABLE_SIZE) {
+            return c >= 0 && table[c];
+        }
+        return isWhitespace && Character.isWhitespace(c);
+    }
+}
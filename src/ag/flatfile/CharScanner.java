@@ -0,0 +1,221 @@
+package ag.flatfile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads characters from a Reader through a large char window, for the parsers of all formats. Single characters
+ * are read and peeked straight from the window, without mark()/reset() on the Reader. Runs of characters are
+ * found with a {@link CharClass} table and copied out in bulk, instead of one append per character.
+ * <p>
+ * A CharScanner keeps the parse position of its source and is not thread safe.
+ */
+public final class CharScanner implements Closeable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 14;
+
+    /**
+     * Receives a run of characters that is still in the scanner window.
+     */
+    @FunctionalInterface
+    public interface CharRun<T> {
+        T map(char[] chars, int start, int length);
+    }
+
+    private final Reader reader;
+    private final char[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    // number of chars consumed before buf[0]
+    private long base = 0;
+
+    public CharScanner(Reader reader) {
+        this(reader, new char[DEFAULT_WINDOW_SIZE]);
+    }
+
+    /**
+     * Scans through a caller supplied window, so it can be reused between parses. The window must not be used
+     * by anything else while this scanner is in use.
+     */
+    public CharScanner(Reader reader, char[] window) {
+        if (window.length < 2) {
+            throw new IllegalArgumentException("CharScanner window must hold at least 2 chars");
+        }
+        this.reader = reader;
+        this.buf = window;
+    }
+
+    /**
+     * @return the next char without consuming it, or -1 at the end of the input
+     */
+    public int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos];
+    }
+
+    /**
+     * @return the next char, or -1 at the end of the input
+     */
+    public int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    /**
+     * Steps back over the last char returned by read(). Only valid directly after a read() that did not return -1.
+     */
+    public void unread() {
+        if (0 == pos) {
+            throw new IllegalStateException("unread() must directly follow a read()");
+        }
+        pos--;
+    }
+
+    /**
+     * @return the number of chars consumed so far
+     */
+    public long getOffset() {
+        return base + pos;
+    }
+
+    /**
+     * Consumes the chars if the input continues with them. The prefix must fit in the window.
+     *
+     * @return true if the prefix was found and consumed
+     */
+    public boolean startsWith(String prefix) throws IOException {
+        int length = prefix.length();
+        if (limit - pos < length) {
+            compact();
+            if (limit - pos < length) {
+                return false;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[pos + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        pos += length;
+        return true;
+    }
+
+    /**
+     * Consumes the chars that are in the class.
+     *
+     * @return the first char that is not in the class, which is not consumed, or -1 at the end of the input
+     */
+    public int skip(CharClass chars) throws IOException {
+        while (pos < limit || fill()) {
+            while (pos < limit) {
+                if (!chars.contains(buf[pos])) {
+                    return buf[pos];
+                }
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Consumes the chars up to the first one in the class.
+     *
+     * @return the char that stopped the skip, which is not consumed, or -1 at the end of the input
+     */
+    public int skipUntil(CharClass stops) throws IOException {
+        while (pos < limit || fill()) {
+            while (pos < limit) {
+                if (stops.contains(buf[pos])) {
+                    return buf[pos];
+                }
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends the chars up to the first one in the class to the builder, a window run at a time.
+     *
+     * @return the char that stopped the read, which is not consumed, or -1 at the end of the input
+     */
+    public int readUntil(CharClass stops, StringBuilder out) throws IOException {
+        while (pos < limit || fill()) {
+            int start = pos;
+            while (pos < limit && !stops.contains(buf[pos])) {
+                pos++;
+            }
+            out.append(buf, start, pos - start);
+            if (pos < limit) {
+                return buf[pos];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hands the chars up to the first one in the class to the mapper while they are still in the window, so
+     * short tokens such as names can be looked up without building a String first. The chars are consumed.
+     *
+     * @return the mapped token, or null when the run is longer than the window, in which case nothing is consumed
+     */
+    public <T> T readToken(CharClass stops, CharRun<T> mapper) throws IOException {
+        int end;
+        while (true) {
+            end = pos;
+            while (end < limit && !stops.contains(buf[end])) {
+                end++;
+            }
+            if (end < limit) {
+                break;
+            }
+            // the run reaches the end of the window, pull in more input
+            int available = limit - pos;
+            if (available == buf.length) {
+                return null;
+            }
+            compact();
+            if (limit - pos == available) {
+                // end of the input
+                end = limit;
+                break;
+            }
+        }
+        T token = mapper.map(buf, pos, end - pos);
+        pos = end;
+        return token;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        compact();
+        return limit > pos;
+    }
+
+    /**
+     * Moves the unread chars to the start of the window and reads more input behind them.
+     */
+    private void compact() throws IOException {
+        int remaining = limit - pos;
+        System.arraycopy(buf, pos, buf, 0, remaining);
+        base += pos;
+        pos = 0;
+        limit = remaining;
+        int n;
+        while (limit < buf.length && -1 != (n = reader.read(buf, limit, buf.length - limit))) {
+            limit += n;
+            if (n > 0) {
+                break;
+            }
+        }
+    }
+}
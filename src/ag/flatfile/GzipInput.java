@@ -0,0 +1,267 @@
+package ag.flatfile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads gzip compressed input without decompressing it to disk first. Decompression runs on a thread of its own
+ * and hands large buffers to the reading thread, so inflating and parsing overlap.
+ * <p>
+ * A file made of independent gzip members that record their compressed size in the header, as BGZF files do,
+ * is inflated by several threads at once, one member per task; the output keeps the member order. Other gzip
+ * files, including plain multi-member ones, can only be split by inflating them, so they are inflated by a single
+ * thread.
+ */
+public final class GzipInput {
+
+    private static final int GZIP_MAGIC_1 = 0x1F;
+    private static final int GZIP_MAGIC_2 = 0x8B;
+    private static final int GZIP_DEFLATE = 8;
+    private static final int FLAG_HCRC = 0x02;
+    private static final int FLAG_EXTRA = 0x04;
+    private static final int FLAG_NAME = 0x08;
+    private static final int FLAG_COMMENT = 0x10;
+    private static final int HEADER_BYTES = 10;
+    private static final int TRAILER_BYTES = 8;
+    // BGZF stores the member size in an extra subfield with id 'B' 'C'
+    private static final int BGZF_ID_1 = 'B';
+    private static final int BGZF_ID_2 = 'C';
+    private static final int MAX_MEMBER_HEADER_BYTES = 1 << 16;
+    // a BGZF member holds at most 64 KiB of data
+    private static final int MAX_MEMBER_DATA_BYTES = 1 << 16;
+
+    private GzipInput() {
+    }
+
+    /**
+     * @return true if the file starts with the gzip magic bytes
+     */
+    public static boolean isGzip(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return GZIP_MAGIC_1 == in.read() && GZIP_MAGIC_2 == in.read();
+        }
+    }
+
+    /**
+     * Opens the file for reading, decompressing it when it is gzip compressed. Files that are not compressed
+     * are read as they are.
+     */
+    public static InputStream open(Path path) throws IOException {
+        if (!isGzip(path)) {
+            return Files.newInputStream(path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            Member first = readMember(channel, 0);
+            if (null != first) {
+                return new PipelinedInputStream("ag-gzip-inflate", pipeline -> inflateMembers(channel, pipeline));
+            }
+            return decompress(Channels.newInputStream(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decompresses the gzip stream on a separate thread. All members of a multi-member stream are read.
+     */
+    public static InputStream decompress(InputStream in) {
+        return new PipelinedInputStream("ag-gzip-inflate", pipeline -> inflate(in, pipeline));
+    }
+
+    /**
+     * Checks the stream for the gzip magic bytes and decompresses it if they are found. The returned stream
+     * must be read instead of the given one.
+     */
+    public static InputStream decompressIfGzip(InputStream in) throws IOException {
+        InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, 2);
+        buffered.mark(2);
+        boolean isGzip = GZIP_MAGIC_1 == buffered.read() && GZIP_MAGIC_2 == buffered.read();
+        buffered.reset();
+        return isGzip ? decompress(buffered) : buffered;
+    }
+
+    private static void inflate(InputStream in, PipelinedInputStream pipeline)
+            throws IOException, InterruptedException {
+        try (InputStream gzip = new GZIPInputStream(in, 1 << 16)) {
+            while (true) {
+                byte[] buffer = pipeline.takeBuffer();
+                int length = 0;
+                int n;
+                while (length < buffer.length && -1 != (n = gzip.read(buffer, length, buffer.length - length))) {
+                    length += n;
+                }
+                pipeline.put(buffer, length);
+                if (length < buffer.length) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * A gzip member whose size is known from its header.
+     */
+    private static final class Member {
+        private final long offset;
+        private final int size;
+        private final int headerLength;
+
+        private Member(long offset, int size, int headerLength) {
+            this.offset = offset;
+            this.size = size;
+            this.headerLength = headerLength;
+        }
+    }
+
+    /**
+     * Reads the members one after the other and inflates up to a few per core at once. When a member without a
+     * recorded size is found, the rest of the file is inflated sequentially.
+     */
+    private static void inflateMembers(FileChannel channel, PipelinedInputStream pipeline)
+            throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "ag-gzip-member");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<byte[]>> inflating = new ArrayDeque<>();
+        try (channel) {
+            long offset = 0;
+            long end = channel.size();
+            Member member;
+            while (offset < end && null != (member = readMember(channel, offset))) {
+                ByteBuffer compressed = ByteBuffer.allocate(member.size);
+                readFully(channel, compressed, member.offset);
+                int headerLength = member.headerLength;
+                inflating.add(executor.submit(() -> inflateMember(compressed.array(), headerLength)));
+                if (inflating.size() >= 2 * threads) {
+                    putNext(inflating, pipeline);
+                }
+                offset += member.size;
+            }
+            while (!inflating.isEmpty()) {
+                putNext(inflating, pipeline);
+            }
+            if (offset < end) {
+                channel.position(offset);
+                inflate(Channels.newInputStream(channel), pipeline);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void putNext(ArrayDeque<Future<byte[]>> inflating, PipelinedInputStream pipeline)
+            throws IOException, InterruptedException {
+        try {
+            byte[] data = inflating.poll().get();
+            pipeline.put(data, data.length);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Reads the header of the member at the offset.
+     *
+     * @return the member, or null when its header does not record its size
+     */
+    private static Member readMember(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + 2).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, offset);
+        if (GZIP_MAGIC_1 != (header.get(0) & 0xFF) || GZIP_MAGIC_2 != (header.get(1) & 0xFF)) {
+            throw new ZipException("Not in gzip format at offset " + offset);
+        }
+        int flags = header.get(3) & 0xFF;
+        if (GZIP_DEFLATE != header.get(2) || 0 == (flags & FLAG_EXTRA)) {
+            return null;
+        }
+        int extraLength = header.getShort(HEADER_BYTES) & 0xFFFF;
+        ByteBuffer extra = ByteBuffer.allocate(extraLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, extra, offset + HEADER_BYTES + 2);
+        int size = -1;
+        for (int i = 0; i + 4 <= extraLength; ) {
+            int fieldLength = extra.getShort(i + 2) & 0xFFFF;
+            if (i + 4 + fieldLength > extraLength) {
+                throw new ZipException("Truncated gzip extra subfield at offset " + (offset + HEADER_BYTES + 2 + i));
+            }
+            if (BGZF_ID_1 == extra.get(i) && BGZF_ID_2 == extra.get(i + 1) && 2 == fieldLength) {
+                size = (extra.getShort(i + 4) & 0xFFFF) + 1;
+            }
+            i += 4 + fieldLength;
+        }
+        int headerLength = HEADER_BYTES + 2 + extraLength;
+        // a name, comment or header crc would come after the extra field, BGZF has none of them
+        if (size < headerLength + TRAILER_BYTES || 0 != (flags & (FLAG_NAME | FLAG_COMMENT | FLAG_HCRC))
+                || headerLength > MAX_MEMBER_HEADER_BYTES) {
+            return null;
+        }
+        return new Member(offset, size, headerLength);
+    }
+
+    private static byte[] inflateMember(byte[] member, int headerLength) throws IOException {
+        ByteBuffer trailer = ByteBuffer.wrap(member, member.length - TRAILER_BYTES, TRAILER_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long expectedCrc = trailer.getInt() & 0xFFFFFFFFL;
+        int length = trailer.getInt();
+        if (length < 0 || length > MAX_MEMBER_DATA_BYTES) {
+            throw new ZipException("Corrupt gzip member: recorded size " + (length & 0xFFFFFFFFL));
+        }
+        byte[] data = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, headerLength, member.length - headerLength - TRAILER_BYTES);
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(data, inflated, length - inflated);
+                if (0 == n && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                throw new ZipException("Corrupt gzip member: expected " + length + " bytes, inflated " + inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt gzip member: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if (crc.getValue() != expectedCrc) {
+            throw new ZipException("Corrupt gzip member: crc mismatch");
+        }
+        return data;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (-1 == channel.read(buffer, position + buffer.position())) {
+                throw new ZipException("Unexpected end of gzip file");
+            }
+        }
+    }
+}
@@ -1,67 +1,52 @@
 package ag.flatfile;
 
-import java.io.IOException;
-import java.io.Reader;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
+/**
+ * Character sources for the parsers. The parsers read through a {@link CharScanner}, which has its own window,
+ * so the sources are not wrapped in a BufferedReader.
+ */
 public class ParserUtil {
 
-    public static int peek(Reader reader) throws IOException {
-        reader.mark(1);
-        int next = reader.read();
-        reader.reset();
-        return next;
+    /**
+     * Decodes UTF-8 characters from the stream.
+     */
+    public static Reader toReader(InputStream in) {
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes UTF-8 characters directly from the byte array, without copying it.
+     */
+    public static Reader toReader(byte[] bytes) {
+        return toReader(ByteBuffer.wrap(bytes));
     }
 
     /**
-     * Reads a String that is defined by a start and end quote character. Supports an escape character,
-     * which allows the quote character to be in the string provided the escape precedes it.
-     *
-     * @param reader
-     * @param quote quoting char that marks the start and end of the string. Usually " or '
-     * @param escapeChar
-     * @return
-     * @throws IOException
+     * Decodes UTF-8 characters directly from the remaining bytes of the buffer, without copying it.
+     * The position of the buffer is not changed.
      */
-    public static String readString(Reader reader, char quote, char escapeChar) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        boolean isEscaped = false;
-        while (reader.ready()) {
-            int c = reader.read();
-            // if quote is not escaped
-            if (quote == c && !isEscaped) {
-                break;
-            }
-            if (escapeChar != c || isEscaped) {
-                sb.append((char)c);
-                isEscaped = false;
-            } else {
-                isEscaped = true;
-            }
-        }
-        return sb.toString();
+    public static Reader toReader(ByteBuffer buffer) {
+        return new ByteBufferReader(buffer);
     }
 
     /**
-     * Reads characters into a string until the separator char or whitespace is found
-     *
-     * @param reader the reader character source
-     * @param separators characters that indicate the end of the literal.
-     * @return The non-whitespace literal String
-     * @throws IOException when mark() is not supported on the Reader or on read() failure
+     * Opens the file, decompressing it on a separate thread when it is gzip compressed, see {@link GzipInput}.
+     * Characters are decoded with the platform charset, like a FileReader does.
      */
-    public static String readLiteral(Reader reader, String separators) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int peeked = peek(reader);
-        while (reader.ready() && isValidLiteralChar(peeked, separators)) {
-            int c = reader.read();
-            sb.append((char)c);
-            peeked = peek(reader);
-        }
-        return sb.toString();
+    public static Reader openFile(String filename) throws IOException {
+        return new InputStreamReader(GzipInput.open(Path.of(filename)), Charset.defaultCharset());
     }
 
-    private static boolean isValidLiteralChar(int c, String separators) {
-        return -1 != c && !separators.contains("" + (char)c) && !Character.isWhitespace(c);
+    /**
+     * Reads the characters of the given text, as opposed to opening it as a filename.
+     */
+    public static Reader toStringReader(String text) {
+        return new StringReader(text);
     }
 
 }
@@ -0,0 +1,152 @@
+package ag.flatfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An InputStream whose bytes are produced on a thread of their own, such as a decompressor, so producing the
+ * input and parsing it overlap. The producer hands whole buffers to the reader through a bounded queue; once the
+ * queue is full it waits for the reader, so only a few buffers are ever held. Buffers are recycled.
+ */
+final class PipelinedInputStream extends InputStream {
+
+    static final int BUFFER_SIZE = 1 << 18;
+    private static final int QUEUE_CAPACITY = 4;
+
+    /**
+     * Writes the bytes of the stream into the pipeline, on the pipeline thread.
+     */
+    interface Producer {
+        void produce(PipelinedInputStream pipeline) throws IOException, InterruptedException;
+    }
+
+    private static final class Chunk {
+        private final byte[] data;
+        private final int length;
+        private final IOException error;
+
+        private Chunk(byte[] data, int length, IOException error) {
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    private static final Chunk END = new Chunk(null, -1, null);
+
+    private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // one more than can be queued: the buffer being read and the one being filled
+    private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 2);
+    private final Thread thread;
+
+    private Chunk current;
+    private int pos = 0;
+    private boolean isClosed = false;
+
+    PipelinedInputStream(String threadName, Producer producer) {
+        thread = new Thread(() -> run(producer), threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return an empty buffer of {@link #BUFFER_SIZE} bytes for the producer to fill
+     */
+    byte[] takeBuffer() {
+        byte[] buffer = free.poll();
+        return null == buffer ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    /**
+     * Queues length bytes of the buffer for the reader, waiting while the queue is full. The producer must not
+     * touch the buffer afterwards.
+     */
+    void put(byte[] buffer, int length) throws InterruptedException {
+        if (length > 0) {
+            chunks.put(new Chunk(buffer, length, null));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureChunk()) {
+            return -1;
+        }
+        return current.data[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (0 == len) {
+            return 0;
+        }
+        if (!ensureChunk()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current.data, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return null == current || END == current ? 0 : current.length - pos;
+    }
+
+    /**
+     * Stops the producer; bytes that were not read yet are dropped.
+     */
+    @Override
+    public void close() {
+        if (!isClosed) {
+            isClosed = true;
+            thread.interrupt();
+            chunks.clear();
+        }
+    }
+
+    private boolean ensureChunk() throws IOException {
+        if (isClosed) {
+            throw new IOException("Stream closed");
+        }
+        while (null == current || (END != current && null == current.error && pos == current.length)) {
+            if (null != current && BUFFER_SIZE == current.data.length) {
+                free.offer(current.data);
+            }
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for input");
+            }
+            pos = 0;
+        }
+        if (null != current.error) {
+            // stays failed, like GZIPInputStream, so reading on after the error does not look like a clean end
+            throw new IOException(current.error.getMessage(), current.error);
+        }
+        return END != current;
+    }
+
+    private void run(Producer producer) {
+        try {
+            try {
+                producer.produce(this);
+                chunks.put(END);
+            } catch (IOException e) {
+                chunks.put(new Chunk(null, 0, e));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable e) {
+                // anything else, an OutOfMemoryError included, must still reach the reader or it waits forever
+                chunks.put(new Chunk(null, 0, new IOException(e)));
+            }
+        } catch (InterruptedException e) {
+            // closed by the reader
+        }
+    }
+}
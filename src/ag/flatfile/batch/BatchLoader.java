@@ -0,0 +1,461 @@
+package ag.flatfile.batch;
+
+import ag.flatfile.csv.CsvMap;
+import ag.flatfile.json.JsonObject;
+import ag.flatfile.json.JsonParser;
+import ag.flatfile.xml.Entity;
+import ag.flatfile.xml.XmlParser;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Loads many csv, json and xml files at the same time, one thread per file. The thread is virtual when the
+ * runtime has virtual threads, so a batch is bounded by the total I/O and CPU rather than by the latency of each
+ * file; older runtimes fall back to a pool of platform threads. Virtual threads only read the files: the parsing
+ * is handed to a pool of one platform thread per core, as it is CPU bound and the parsers keep their scratch
+ * buffers per thread, which a thread per file would allocate again for every file.
+ * <p>
+ * Two budgets give back-pressure: the number of files in flight and the bytes of the files in flight. A file
+ * counts against both from the moment it is submitted until its result has been handed to the caller's handler,
+ * so results that are waiting for a slow handler hold the budget too. The byte budget counts file sizes, the
+ * parsed trees take a small multiple of that. A file larger than the whole byte budget is loaded on its own.
+ * <p>
+ * The format is taken from the file extension ({@code .csv}, {@code .json}, {@code .xml}). A BatchLoader can be
+ * shared; concurrent batches share its budgets.
+ * <pre>
+ * new BatchLoader(512L &lt;&lt; 20, 2000).load(Path.of("incoming"), result -&gt; {
+ *     if (result.isSuccess()) {
+ *         store(result.getPath(), result.getJson());
+ *     } else {
+ *         log.error("Could not load " + result.getPath() + ": " + result.getError());
+ *     }
+ * });
+ * </pre>
+ */
+public class BatchLoader {
+
+    public static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 256L << 20;
+    public static final int DEFAULT_MAX_FILES_IN_FLIGHT = 1024;
+
+    // the byte budget is kept in KiB, so budgets past 2 GB fit the int permits of a Semaphore
+    private static final int BUDGET_UNIT_SHIFT = 10;
+
+    public enum Format {
+        CSV, JSON, XML;
+
+        /**
+         * @return the format of the file by its extension, or null when it is not one of the supported ones
+         */
+        public static Format of(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            } else if (name.endsWith(".json")) {
+                return JSON;
+            } else if (name.endsWith(".xml")) {
+                return XML;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The outcome of loading one file: the parsed document, or the reason it could not be loaded.
+     */
+    public static final class Result {
+        private final Path path;
+        private final Format format;
+        private final long bytes;
+        private final Object value;
+        private final Throwable error;
+        // budget held until the result has been handled
+        private final int budget;
+
+        private Result(Path path, Format format, long bytes, Object value, Throwable error, int budget) {
+            this.path = path;
+            this.format = format;
+            this.bytes = bytes;
+            this.value = value;
+            this.error = error;
+            this.budget = budget;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return the format of the file, or null when its extension is not supported
+         */
+        public Format getFormat() {
+            return format;
+        }
+
+        /**
+         * @return the size of the file in bytes, or -1 when it could not be read
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public boolean isSuccess() {
+            return null == error;
+        }
+
+        /**
+         * @return the exception that stopped the file from loading, or null for a successful result. It can be an
+         * Error, such as the StackOverflowError of a too deeply nested document.
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * @return the {@link CsvMap}, {@link JsonObject} or {@link Entity} the file was parsed into
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        public CsvMap getCsv() {
+            return value(Format.CSV, CsvMap.class);
+        }
+
+        public JsonObject getJson() {
+            return value(Format.JSON, JsonObject.class);
+        }
+
+        public Entity getXml() {
+            return value(Format.XML, Entity.class);
+        }
+
+        private <T> T value(Format expected, Class<T> type) {
+            if (null != error) {
+                throw new IllegalStateException("Loading " + path + " failed", error);
+            }
+            if (expected != format) {
+                throw new IllegalStateException(path + " was loaded as " + format + ", not " + expected);
+            }
+            return type.cast(value);
+        }
+
+        @Override
+        public String toString() {
+            return path + (null == error ? " loaded as " + format : " failed: " + error);
+        }
+    }
+
+    private final long maxBytesInFlight;
+    private final int maxFilesInFlight;
+    private final Semaphore files;
+    private final Semaphore bytes;
+    private final int maxBytePermits;
+    private final JsonParser jsonParser = new JsonParser();
+    private final XmlParser xmlParser = new XmlParser();
+
+    public BatchLoader() {
+        this(DEFAULT_MAX_BYTES_IN_FLIGHT, DEFAULT_MAX_FILES_IN_FLIGHT);
+    }
+
+    /**
+     * @param maxBytesInFlight the total size of the files that may be loading or waiting to be handled
+     * @param maxFilesInFlight the number of files that may be loading or waiting to be handled
+     */
+    public BatchLoader(long maxBytesInFlight, int maxFilesInFlight) {
+        if (maxBytesInFlight < 1) {
+            throw new IllegalArgumentException("maxBytesInFlight must be positive, not " + maxBytesInFlight);
+        }
+        if (maxFilesInFlight < 1) {
+            throw new IllegalArgumentException("maxFilesInFlight must be positive, not " + maxFilesInFlight);
+        }
+        this.maxBytesInFlight = maxBytesInFlight;
+        this.maxFilesInFlight = maxFilesInFlight;
+        this.maxBytePermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxBytesInFlight >> BUDGET_UNIT_SHIFT));
+        this.files = new Semaphore(maxFilesInFlight);
+        this.bytes = new Semaphore(maxBytePermits);
+    }
+
+    public long getMaxBytesInFlight() {
+        return maxBytesInFlight;
+    }
+
+    public int getMaxFilesInFlight() {
+        return maxFilesInFlight;
+    }
+
+    /**
+     * Loads the csv, json and xml files directly inside the directory. Files with other extensions and
+     * subdirectories are left out.
+     *
+     * @return the number of files that were loaded successfully
+     */
+    public long load(Path directory, Consumer<Result> handler) throws IOException, InterruptedException {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(path -> Files.isRegularFile(path) && null != Format.of(path)).sorted().forEach(paths::add);
+        }
+        return load(paths, handler);
+    }
+
+    /**
+     * Loads the files and hands each result to the handler as soon as it is complete, so results arrive in
+     * completion order, not in the order of the paths. Files that cannot be loaded, including files of an
+     * unsupported type, produce an unsuccessful result instead of stopping the batch.
+     * <p>
+     * The handler is always called on the calling thread, one result at a time. When it throws, the files still
+     * loading are abandoned and the exception is passed on.
+     *
+     * @return the number of files that were loaded successfully
+     */
+    public long load(Collection<Path> paths, Consumer<Result> handler) throws InterruptedException {
+        if (null == handler) {
+            throw new NullPointerException("BatchLoader handler cannot be null");
+        }
+        Batch batch = new Batch(handler);
+        ExecutorService executor = newVirtualThreadExecutor();
+        ExecutorService parsers = null;
+        if (null == executor) {
+            executor = newThreadPool("ag-batch-loader",
+                    Math.min(maxFilesInFlight, Runtime.getRuntime().availableProcessors() * 4));
+        } else {
+            parsers = newThreadPool("ag-batch-parser",
+                    Math.min(maxFilesInFlight, Runtime.getRuntime().availableProcessors()));
+        }
+        try {
+            for (Path path : paths) {
+                long size = sizeOf(path);
+                int budget = toPermits(size);
+                batch.acquire(files, 1);
+                try {
+                    batch.acquire(bytes, budget);
+                } catch (InterruptedException | RuntimeException | Error e) {
+                    files.release();
+                    throw e;
+                }
+                batch.pending++;
+                executor.execute(new LoadTask(batch, path, size, budget, parsers));
+            }
+            while (batch.pending > 0) {
+                batch.handleNext();
+            }
+        } finally {
+            if (batch.pending > 0) {
+                // abandoned after a failure, give the budget of the files still out back once they finish
+                int unfinished = batch.pending;
+                for (Runnable task : executor.shutdownNow()) {
+                    // never started, so it never queues a result
+                    release(((LoadTask) task).budget);
+                    unfinished--;
+                }
+                if (null != parsers) {
+                    // a reader waiting for a dropped parse is interrupted already, cancelling is for the rest
+                    for (Runnable task : parsers.shutdownNow()) {
+                        ((Future<?>) task).cancel(false);
+                    }
+                }
+                if (unfinished > 0) {
+                    releaseWhenDone(batch.completed, unfinished);
+                }
+            } else {
+                executor.shutdown();
+                if (null != parsers) {
+                    parsers.shutdown();
+                }
+            }
+        }
+        return batch.loaded;
+    }
+
+    /**
+     * The state of one load() call. Only used by the calling thread, apart from the queue.
+     */
+    private final class Batch {
+        private final BlockingQueue<Result> completed = new LinkedBlockingQueue<>();
+        private final Consumer<Result> handler;
+        private int pending = 0;
+        private long loaded = 0;
+
+        private Batch(Consumer<Result> handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Takes the permits, handling the results that release budget while they are not available.
+         */
+        private void acquire(Semaphore budget, int permits) throws InterruptedException {
+            while (!budget.tryAcquire(permits)) {
+                if (0 == pending) {
+                    // only another batch on this loader can release it
+                    budget.acquire(permits);
+                    return;
+                }
+                handleNext();
+            }
+        }
+
+        private void handleNext() throws InterruptedException {
+            Result result = completed.take();
+            pending--;
+            try {
+                handler.accept(result);
+            } finally {
+                release(result);
+            }
+            if (result.isSuccess()) {
+                loaded++;
+            }
+        }
+    }
+
+    /**
+     * Loads one file of a batch and queues its result.
+     */
+    private final class LoadTask implements Runnable {
+        private final Batch batch;
+        private final Path path;
+        private final long size;
+        private final int budget;
+        private final ExecutorService parsers;
+
+        private LoadTask(Batch batch, Path path, long size, int budget, ExecutorService parsers) {
+            this.batch = batch;
+            this.path = path;
+            this.size = size;
+            this.budget = budget;
+            this.parsers = parsers;
+        }
+
+        @Override
+        public void run() {
+            batch.completed.add(loadFile(path, size, budget, parsers));
+        }
+    }
+
+    /**
+     * Reads and parses the file. Always returns a result, even when the parser throws an Error, so the batch
+     * does not wait for it forever and the budget it holds is given back.
+     *
+     * @param parsers the pool to parse on, or null to parse on the calling thread
+     */
+    private Result loadFile(Path path, long size, int budget, ExecutorService parsers) {
+        Format format = Format.of(path);
+        try {
+            if (null == format) {
+                throw new IllegalArgumentException("Unsupported file type: " + path.getFileName());
+            }
+            byte[] content = Files.readAllBytes(path);
+            Object document;
+            if (null == parsers) {
+                document = parse(format, content);
+            } else {
+                document = parseOn(parsers, format, content);
+            }
+            return new Result(path, format, content.length, document, null, budget);
+        } catch (Throwable e) {
+            return new Result(path, format, size, null, e, budget);
+        }
+    }
+
+    private Object parse(Format format, byte[] content) throws Exception {
+        switch (format) {
+            case CSV:
+                return new CsvMap(content);
+            case JSON:
+                return jsonParser.parse(content);
+            case XML:
+                return xmlParser.parse(content);
+            default:
+                throw new IllegalStateException("Unknown format: " + format);
+        }
+    }
+
+    private Object parseOn(ExecutorService parsers, Format format, byte[] content) throws Exception {
+        try {
+            return parsers.submit(() -> parse(format, content)).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (Exception) cause;
+        }
+    }
+
+    private void release(Result result) {
+        release(result.budget);
+    }
+
+    private void release(int budget) {
+        bytes.release(budget);
+        files.release();
+    }
+
+    private void releaseWhenDone(BlockingQueue<Result> completed, int pending) {
+        Thread releaser = new Thread(() -> {
+            for (int i = 0; i < pending; i++) {
+                try {
+                    release(completed.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "ag-batch-release");
+        releaser.setDaemon(true);
+        releaser.start();
+    }
+
+    private int toPermits(long size) {
+        if (size <= 0) {
+            return 0;
+        }
+        long permits = (size + (1 << BUDGET_UNIT_SHIFT) - 1) >> BUDGET_UNIT_SHIFT;
+        return (int) Math.min(permits, maxBytePermits);
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor when the runtime has one. It is looked up reflectively, so the
+     * library still runs on runtimes without virtual threads.
+     *
+     * @return the executor, or null when the runtime has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newThreadPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package ag.flatfile.bind;
+
+public class BindException extends RuntimeException {
+    public BindException(String message) {
+        super(message);
+    }
+
+    public BindException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,321 @@
+package ag.flatfile.bind;
+
+import ag.flatfile.csv.CsvMap;
+import ag.flatfile.csv.CsvReader;
+import ag.flatfile.json.JsonObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.text.ParseException;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Binds json objects and csv rows to records or plain java objects.
+ * <p>
+ * A class is inspected once, the first time {@link #of(Class)} is called for it. Records are created through
+ * their canonical constructor, other classes through their no-arg constructor followed by their setters
+ * ({@code setName(value)}), or their non-final fields when there is no setter. Constructors and setters are
+ * bound through {@link LambdaMetafactory}, so binding an instance costs about as much as hand-written mapping.
+ * <p>
+ * Properties are matched to json members and csv headers by name, which can be overridden with
+ * {@link BindName}. Values are converted to the property type; missing values leave POJO properties untouched
+ * and give record components null (or zero/false for primitives).
+ */
+public final class Binder<T> {
+
+    private static final Object ABSENT = new Object();
+
+    private static final ClassValue<Binder<?>> binders = new ClassValue<>() {
+        @Override
+        protected Binder<?> computeValue(Class<?> type) {
+            return new Binder<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final String[] names;
+    private final Converters.Converter[] converters;
+    private final Instantiator<T> instantiator;
+
+    private interface Instantiator<T> {
+        T create(Object[] values) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Binder<T> of(Class<T> type) {
+        return (Binder<T>) binders.get(type);
+    }
+
+    private Binder(Class<T> type) {
+        this.type = type;
+        if (type.isInterface() || type.isPrimitive() || type.isArray() || Modifier.isAbstract(type.getModifiers())) {
+            throw new BindException("Cannot bind to " + type.getName() + ", it must be a record or concrete class");
+        }
+        List<String> names = new ArrayList<>();
+        List<Converters.Converter> converters = new ArrayList<>();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            instantiator = type.isRecord()
+                    ? inspectRecord(lookup, names, converters)
+                    : inspectBean(lookup, names, converters);
+        } catch (BindException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new BindException("Failed to inspect " + type.getName() + " for binding", e);
+        }
+        this.names = names.toArray(new String[0]);
+        this.converters = converters.toArray(new Converters.Converter[0]);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the json member or csv header names that are bound, in binding order
+     */
+    public List<String> names() {
+        return List.of(names);
+    }
+
+    /**
+     * Binds the members of a json object.
+     */
+    public T bind(JsonObject object) {
+        if (!object.isObject()) {
+            throw new BindException("Cannot bind " + type.getName() + " from a json array");
+        }
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = object.hasMember(names[i]) ? object.getMember(names[i]) : ABSENT;
+        }
+        return create(values);
+    }
+
+    /**
+     * Binds every element of a json array of objects.
+     */
+    public List<T> bindAll(JsonObject array) {
+        if (!array.isArray()) {
+            throw new BindException("Expected a json array of " + type.getName() + " but found an object");
+        }
+        List<T> bound = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            bound.add(bind(array.get(i)));
+        }
+        return bound;
+    }
+
+    /**
+     * Binds a row of the csv, using the header row (row 0) to find the columns.
+     */
+    public T bind(CsvMap csv, int row) {
+        return bindRow(csv, row, columnsOf(csv));
+    }
+
+    /**
+     * Binds every row of the csv after the header row.
+     */
+    public List<T> bindRows(CsvMap csv) {
+        int[] columns = columnsOf(csv);
+        List<T> bound = new ArrayList<>(Math.max(0, csv.rows() - 1));
+        for (int row = 1; row < csv.rows(); row++) {
+            bound.add(bindRow(csv, row, columns));
+        }
+        return bound;
+    }
+
+    /**
+     * Binds csv rows as they are parsed, without building a {@link CsvMap}. The first row is the header.
+     * The reader is not closed.
+     *
+     * @param consumer receives each bound row, in order
+     */
+    public void readCsv(Reader reader, Consumer<? super T> consumer) throws IOException, ParseException {
+        CsvReader csvReader = new CsvReader(reader);
+        List<String> header = csvReader.readRow();
+        if (null == header) {
+            return;
+        }
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = header.indexOf(names[i]);
+        }
+        List<String> row;
+        Object[] values = new Object[names.length];
+        while (null != (row = csvReader.readRow())) {
+            for (int i = 0; i < names.length; i++) {
+                values[i] = columns[i] < 0 || columns[i] >= row.size() ? ABSENT : row.get(columns[i]);
+            }
+            consumer.accept(create(values));
+        }
+    }
+
+    private int[] columnsOf(CsvMap csv) {
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = csv.indexOf(names[i]);
+        }
+        return columns;
+    }
+
+    private T bindRow(CsvMap csv, int row, int[] columns) {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = columns[i] < 0 ? ABSENT : csv.get(row, columns[i]);
+        }
+        return create(values);
+    }
+
+    private T create(Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (ABSENT != values[i]) {
+                try {
+                    values[i] = converters[i].convert(values[i]);
+                } catch (RuntimeException e) {
+                    throw new BindException("Failed to bind '" + names[i] + "' of " + type.getName()
+                            + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        try {
+            return instantiator.create(values);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new BindException("Failed to create " + type.getName(), e);
+        }
+    }
+
+    private Instantiator<T> inspectRecord(MethodHandles.Lookup lookup, List<String> names,
+                                          List<Converters.Converter> converters) throws ReflectiveOperationException {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            parameterTypes[i] = component.getType();
+            BindName bindName = component.getAnnotation(BindName.class);
+            names.add(null == bindName ? component.getName() : bindName.value());
+            converters.add(Converters.forType(component.getType(), component.getGenericType()));
+        }
+        MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        Converters.Converter[] absentValues = converters.toArray(new Converters.Converter[0]);
+        return values -> {
+            for (int i = 0; i < values.length; i++) {
+                if (ABSENT == values[i]) {
+                    values[i] = absentValues[i].convert(null);
+                }
+            }
+            return type.cast(constructor.invokeExact(values));
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Instantiator<T> inspectBean(MethodHandles.Lookup lookup, List<String> names,
+                                        List<Converters.Converter> converters) throws Throwable {
+        MethodHandle constructorHandle;
+        try {
+            constructorHandle = lookup.findConstructor(type, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException e) {
+            throw new BindException(type.getName() + " needs a no-arg constructor to be bound");
+        }
+        Supplier<Object> constructor = (Supplier<Object>) LambdaMetafactory.metafactory(lookup, "get",
+                MethodType.methodType(Supplier.class), MethodType.methodType(Object.class), constructorHandle,
+                MethodType.methodType(type)).getTarget().invokeExact();
+
+        Map<String, BiConsumer<Object, Object>> setters = new LinkedHashMap<>();
+        Map<String, Member> members = new LinkedHashMap<>();
+        for (Method method : type.getMethods()) {
+            if (isSetter(method)) {
+                String name = bindName(method, decapitalize(method.getName().substring(3)));
+                if (null == members.putIfAbsent(name, method)) {
+                    setters.put(name, setterOf(lookup, method));
+                }
+            }
+        }
+        for (Class<?> c = type; Object.class != c; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic()) {
+                    continue;
+                }
+                String name = bindName(field, field.getName());
+                if (null == members.putIfAbsent(name, field)) {
+                    MethodHandle setter = MethodHandles.privateLookupIn(c, MethodHandles.lookup())
+                            .unreflectSetter(field)
+                            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                    setters.put(name, (target, value) -> {
+                        try {
+                            setter.invokeExact(target, value);
+                        } catch (Throwable e) {
+                            throw new BindException("Failed to set field " + field.getName(), e);
+                        }
+                    });
+                }
+            }
+        }
+
+        for (Map.Entry<String, Member> entry : members.entrySet()) {
+            names.add(entry.getKey());
+            Member member = entry.getValue();
+            if (member instanceof Method) {
+                Method method = (Method) member;
+                converters.add(Converters.forType(method.getParameterTypes()[0], method.getGenericParameterTypes()[0]));
+            } else {
+                Field field = (Field) member;
+                converters.add(Converters.forType(field.getType(), field.getGenericType()));
+            }
+        }
+        @SuppressWarnings("unchecked")
+        BiConsumer<Object, Object>[] setterArray = (BiConsumer<Object, Object>[]) setters.values()
+                .toArray(new BiConsumer<?, ?>[0]);
+        return values -> {
+            Object instance = constructor.get();
+            for (int i = 0; i < values.length; i++) {
+                if (ABSENT != values[i]) {
+                    setterArray[i].accept(instance, values[i]);
+                }
+            }
+            return type.cast(instance);
+        };
+    }
+
+    private static boolean isSetter(Method method) {
+        return !Modifier.isStatic(method.getModifiers())
+                && 1 == method.getParameterCount()
+                && method.getName().length() > 3
+                && method.getName().startsWith("set")
+                && Object.class != method.getDeclaringClass();
+    }
+
+    @SuppressWarnings("unchecked")
+    private BiConsumer<Object, Object> setterOf(MethodHandles.Lookup lookup, Method method) throws Throwable {
+        Class<?> parameterType = MethodType.methodType(method.getParameterTypes()[0]).wrap().returnType();
+        MethodHandle setter = lookup.unreflect(method);
+        return (BiConsumer<Object, Object>) LambdaMetafactory.metafactory(lookup, "accept",
+                MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class),
+                setter,
+                MethodType.methodType(void.class, type, parameterType)).getTarget().invokeExact();
+    }
+
+    private static String bindName(AnnotatedElement element, String defaultName) {
+        BindName bindName = element.getAnnotation(BindName.class);
+        return null == bindName ? defaultName : bindName.value();
+    }
+
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,153 @@
+package ag.flatfile.bind;
+
+import ag.flatfile.json.JsonObject;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Converts parsed json values or csv columns to the declared type of a bound property. A converter is chosen
+ * once per property when the class is inspected, so binding never has to look at the target type again.
+ */
+class Converters {
+
+    @FunctionalInterface
+    interface Converter {
+        Object convert(Object value);
+    }
+
+    private Converters() {
+    }
+
+    static Converter forType(Class<?> type, Type genericType) {
+        if (Object.class == type) {
+            return value -> value;
+        } else if (String.class == type) {
+            return value -> null == value ? null : value.toString();
+        } else if (int.class == type || Integer.class == type) {
+            return number(type, 0, n -> n.intValue(), Integer::valueOf);
+        } else if (long.class == type || Long.class == type) {
+            return number(type, 0L, n -> n.longValue(), Long::valueOf);
+        } else if (double.class == type || Double.class == type) {
+            return number(type, 0d, n -> n.doubleValue(), Double::valueOf);
+        } else if (float.class == type || Float.class == type) {
+            return number(type, 0f, n -> n.floatValue(), Float::valueOf);
+        } else if (short.class == type || Short.class == type) {
+            return number(type, (short) 0, n -> n.shortValue(), Short::valueOf);
+        } else if (byte.class == type || Byte.class == type) {
+            return number(type, (byte) 0, n -> n.byteValue(), Byte::valueOf);
+        } else if (boolean.class == type || Boolean.class == type) {
+            Object empty = type.isPrimitive() ? false : null;
+            return value -> {
+                if (value instanceof Boolean) {
+                    return value;
+                }
+                String str = text(value);
+                return null == str ? empty : Boolean.valueOf(str);
+            };
+        } else if (char.class == type || Character.class == type) {
+            Object empty = type.isPrimitive() ? '\0' : null;
+            return value -> {
+                String str = text(value);
+                if (null == str) {
+                    return empty;
+                }
+                if (1 != str.length()) {
+                    throw new BindException("Expected a single character but found '" + str + "'");
+                }
+                return str.charAt(0);
+            };
+        } else if (BigDecimal.class == type) {
+            return value -> null == text(value) ? null : new BigDecimal(text(value));
+        } else if (BigInteger.class == type) {
+            return value -> null == text(value) ? null : new BigInteger(text(value));
+        } else if (type.isEnum()) {
+            return enumConverter(type);
+        } else if (JsonObject.class == type) {
+            return value -> value;
+        } else if (List.class == type || Collection.class == type) {
+            return listConverter(genericType);
+        } else if (!type.isPrimitive() && !type.isArray() && !type.getName().startsWith("java.")) {
+            return value -> null == value ? null : Binder.of(type).bind(jsonObject(value));
+        }
+        throw new BindException("Cannot bind properties of type " + type.getName());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Converter enumConverter(Class<?> type) {
+        Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+        return value -> null == text(value) ? null : Enum.valueOf(enumType, text(value));
+    }
+
+    private static Converter listConverter(Type genericType) {
+        Converter element = Converters::identity;
+        if (genericType instanceof ParameterizedType) {
+            Type elementType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (elementType instanceof Class) {
+                element = forType((Class<?>) elementType, elementType);
+            } else if (elementType instanceof ParameterizedType) {
+                element = forType((Class<?>) ((ParameterizedType) elementType).getRawType(), elementType);
+            }
+        }
+        Converter elementConverter = element;
+        return value -> {
+            if (null == value) {
+                return null;
+            }
+            JsonObject array = jsonObject(value);
+            if (!array.isArray()) {
+                throw new BindException("Expected a json array but found an object");
+            }
+            List<Object> list = new ArrayList<>(array.size());
+            for (int i = 0; i < array.size(); i++) {
+                list.add(elementConverter.convert(array.getMember(i)));
+            }
+            return Collections.unmodifiableList(list);
+        };
+    }
+
+    private static Object identity(Object value) {
+        return value;
+    }
+
+    private interface NumberFunction {
+        Object apply(Number number);
+    }
+
+    private interface ParseFunction {
+        Object apply(String str);
+    }
+
+    private static Converter number(Class<?> type, Object primitiveDefault, NumberFunction fromNumber,
+                                    ParseFunction fromString) {
+        Object empty = type.isPrimitive() ? primitiveDefault : null;
+        return value -> {
+            if (value instanceof Number) {
+                return fromNumber.apply((Number) value);
+            }
+            String str = text(value);
+            return null == str ? empty : fromString.apply(str);
+        };
+    }
+
+    /**
+     * @return the trimmed text of the value, or null for null and empty values (blank csv columns)
+     */
+    private static String text(Object value) {
+        if (null == value) {
+            return null;
+        }
+        String str = value.toString().trim();
+        return str.isEmpty() ? null : str;
+    }
+
+    private static JsonObject jsonObject(Object value) {
+        if (!(value instanceof JsonObject)) {
+            throw new BindException("Expected a json object or array but found '" + value + "'");
+        }
+        return (JsonObject) value;
+    }
+}
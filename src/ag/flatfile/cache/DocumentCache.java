@@ -0,0 +1,410 @@
+package ag.flatfile.cache;
+
+import ag.flatfile.csv.CsvMap;
+import ag.flatfile.json.JsonObject;
+import ag.flatfile.json.JsonParser;
+import ag.flatfile.xml.Entity;
+import ag.flatfile.xml.XmlParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A shared cache of parsed files, so components that read the same reference files parse and hold each of them
+ * only once. Documents are looked up by path and are reloaded once the size or modification time of the file
+ * changes; a lookup of a cached file costs a file stat and a hash lookup, without taking a lock.
+ * <p>
+ * The cache is bounded by the estimated heap size of the documents, not by their number. When it grows past its
+ * limit, documents are evicted in least recently used order, approximated by giving each document that was hit
+ * since the last pass a second chance. That way a hit only sets a flag, and an eviction costs constant time
+ * instead of a sort of all entries. A document larger than the whole limit is returned but not kept, and does
+ * not evict anything.
+ * <p>
+ * When several threads ask for a file that is not cached, one of them parses it and the others wait for its
+ * result. The cached {@link CsvMap}, {@link JsonObject} and {@link Entity} instances are shared between all
+ * callers and are read-only. Files are read as UTF-8.
+ */
+public class DocumentCache {
+
+    // rough heap sizes of the objects the estimates count
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 8;
+    private static final int STRING_BYTES = 40;
+    private static final int MAP_ENTRY_BYTES = 48;
+    private static final int XML_ELEMENT_BYTES = 40;
+
+    /**
+     * A snapshot of the cache counters.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long loadFailures;
+        private final long evictions;
+        private final int size;
+        private final long weight;
+
+        private Stats(long hits, long misses, long loadFailures, long evictions, int size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.loadFailures = loadFailures;
+            this.evictions = evictions;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        /**
+         * @return the lookups that were answered without parsing, including those that waited for another
+         * thread's parse
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return the lookups that parsed the file
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getLoadFailures() {
+            return loadFailures;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return the number of cached documents
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return the estimated heap size of the cached documents in bytes
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return 0 == lookups ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " misses=" + misses + " loadFailures=" + loadFailures + " evictions="
+                    + evictions + " size=" + size + " weight=" + weight;
+        }
+    }
+
+    /**
+     * A file and the type it is parsed into.
+     */
+    private static final class Source {
+        private final Path path;
+        private final Class<?> type;
+
+        private Source(Path path, Class<?> type) {
+            this.path = path;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Source)) {
+                return false;
+            }
+            Source other = (Source) o;
+            return path.equals(other.path) && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + type.hashCode();
+        }
+    }
+
+    /**
+     * One version of a cached file. The future is shared by all lookups while the file is being parsed.
+     */
+    private static final class Node {
+        private final long size;
+        private final FileTime modified;
+        private final CompletableFuture<Object> document = new CompletableFuture<>();
+        // guarded by the cache lock, 0 until the document is counted in the cache weight
+        private long weight = 0;
+        // set by hits, cleared when eviction passes the node over
+        private volatile boolean isReferenced = false;
+
+        private Node(BasicFileAttributes attributes) {
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime();
+        }
+
+        private boolean isVersionOf(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified.equals(attributes.lastModifiedTime());
+        }
+    }
+
+    private final long maxWeight;
+    private final Map<Source, Node> nodes = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private final JsonParser jsonParser = new JsonParser();
+    private final XmlParser xmlParser = new XmlParser();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // the counted documents, oldest first, guarded by lock
+    private final LinkedHashMap<Source, Node> evictionOrder = new LinkedHashMap<>();
+    // guarded by lock
+    private long weight = 0;
+
+    /**
+     * @param maxWeight the estimated heap size in bytes the cached documents may take
+     */
+    public DocumentCache(long maxWeight) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("DocumentCache maxWeight must be positive, not " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    public CsvMap getCsv(Path path) throws IOException, ParseException {
+        return CsvMap.class.cast(get(path, CsvMap.class));
+    }
+
+    public JsonObject getJson(Path path) throws IOException {
+        try {
+            return JsonObject.class.cast(get(path, JsonObject.class));
+        } catch (ParseException e) {
+            // only thrown by the csv parser
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Entity getXml(Path path) throws IOException {
+        try {
+            return Entity.class.cast(get(path, Entity.class));
+        } catch (ParseException e) {
+            // only thrown by the csv parser
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Drops the cached documents of the file.
+     */
+    public void invalidate(Path path) {
+        Path normalized = normalize(path);
+        synchronized (lock) {
+            for (Class<?> type : List.of(CsvMap.class, JsonObject.class, Entity.class)) {
+                Source source = new Source(normalized, type);
+                Node node = nodes.remove(source);
+                if (null != node) {
+                    evictionOrder.remove(source);
+                    weight -= node.weight;
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            nodes.clear();
+            evictionOrder.clear();
+            weight = 0;
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(hits.sum(), misses.sum(), loadFailures.sum(), evictions.sum(), nodes.size(), weight);
+        }
+    }
+
+    private Object get(Path path, Class<?> type) throws IOException, ParseException {
+        Path normalized = normalize(path);
+        BasicFileAttributes attributes = Files.readAttributes(normalized, BasicFileAttributes.class);
+        Source source = new Source(normalized, type);
+
+        Node node = nodes.get(source);
+        if (null == node || !node.isVersionOf(attributes)) {
+            Node created = new Node(attributes);
+            synchronized (lock) {
+                node = nodes.get(source);
+                if (null == node || !node.isVersionOf(attributes)) {
+                    if (null != node) {
+                        // the file changed, the old version goes
+                        evictionOrder.remove(source);
+                        weight -= node.weight;
+                    }
+                    nodes.put(source, created);
+                    node = null;
+                }
+            }
+            if (null == node) {
+                misses.increment();
+                return load(source, created);
+            }
+        }
+        hits.increment();
+        if (!node.isReferenced) {
+            node.isReferenced = true;
+        }
+        return await(node);
+    }
+
+    private Object load(Source source, Node node) throws IOException, ParseException {
+        Object document;
+        try {
+            byte[] content = Files.readAllBytes(source.path);
+            document = parse(source.type, content);
+            long documentWeight = estimateWeight(document, content.length);
+            synchronized (lock) {
+                // only counted while this version is still the cached one
+                if (nodes.get(source) == node) {
+                    if (documentWeight > maxWeight) {
+                        // would push everything else out and then itself, so it is not kept at all
+                        nodes.remove(source, node);
+                    } else {
+                        node.weight = documentWeight;
+                        weight += documentWeight;
+                        evictionOrder.put(source, node);
+                        evict();
+                    }
+                }
+            }
+        } catch (IOException | ParseException | RuntimeException | Error e) {
+            loadFailures.increment();
+            nodes.remove(source, node);
+            node.document.completeExceptionally(e);
+            throw e;
+        }
+        node.document.complete(document);
+        return document;
+    }
+
+    private Object parse(Class<?> type, byte[] content) throws IOException, ParseException {
+        if (CsvMap.class == type) {
+            return new CsvMap(content);
+        } else if (JsonObject.class == type) {
+            return jsonParser.parse(content);
+        }
+        return xmlParser.parse(content);
+    }
+
+    /**
+     * Evicts the oldest documents that were not hit since they were last passed over, until the cache is within
+     * its weight. A hit document is moved to the back instead, so every document is passed over at most once.
+     * Must hold the lock.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Source, Node>> oldest = evictionOrder.entrySet().iterator();
+        while (weight > maxWeight && oldest.hasNext()) {
+            Map.Entry<Source, Node> entry = oldest.next();
+            Node node = entry.getValue();
+            oldest.remove();
+            if (node.isReferenced) {
+                node.isReferenced = false;
+                evictionOrder.put(entry.getKey(), node);
+                oldest = evictionOrder.entrySet().iterator();
+            } else {
+                nodes.remove(entry.getKey(), node);
+                weight -= node.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    private static Object await(Node node) throws IOException, ParseException {
+        try {
+            return node.document.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the document to load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return Objects.requireNonNull(path, "DocumentCache path cannot be null").toAbsolutePath().normalize();
+    }
+
+    /**
+     * Estimates the heap size of a parsed document from its structure.
+     */
+    static long estimateWeight(Object document, long fileBytes) {
+        if (document instanceof CsvMap) {
+            CsvMap csv = (CsvMap) document;
+            long bytes = OBJECT_BYTES;
+            for (int row = 0; row < csv.rows(); row++) {
+                bytes += OBJECT_BYTES + REFERENCE_BYTES;
+                for (int column = 0; column < csv.columns(); column++) {
+                    bytes += REFERENCE_BYTES + STRING_BYTES + csv.get(row, column).length();
+                }
+            }
+            return bytes;
+        } else if (document instanceof JsonObject) {
+            return estimateJsonWeight((JsonObject) document);
+        }
+        // the element arrays plus the text and attribute chars, which are at most twice the file size
+        return OBJECT_BYTES + ((Entity) document).getDocument().size() * (long) XML_ELEMENT_BYTES + 2 * fileBytes;
+    }
+
+    private static long estimateJsonWeight(JsonObject json) {
+        long bytes = 4 * OBJECT_BYTES;
+        for (String key : json.keys()) {
+            bytes += MAP_ENTRY_BYTES;
+            Object value;
+            if (json.isArray()) {
+                value = json.getMember(Integer.parseInt(key));
+            } else {
+                bytes += STRING_BYTES + key.length();
+                value = json.getMember(key);
+            }
+            if (value instanceof JsonObject) {
+                bytes += estimateJsonWeight((JsonObject) value);
+            } else if (value instanceof String) {
+                bytes += STRING_BYTES + ((String) value).length();
+            } else if (null != value) {
+                bytes += OBJECT_BYTES;
+            }
+        }
+        return bytes;
+    }
+}
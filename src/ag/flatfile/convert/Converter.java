@@ -0,0 +1,49 @@
+package ag.flatfile.convert;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Map;
+
+/**
+ * Connects a {@link RecordReader} to a {@link RecordWriter}, one record at a time. Only the current record is
+ * held in memory, so the heap needed does not depend on the size of the input:
+ * <pre>
+ * try (RecordReader in = new CsvRecordReader(new FileReader("export.csv"));
+ *      RecordWriter out = new JsonRecordWriter(new FileWriter("export.ndjson"), true)) {
+ *     Converter.convert(in, new FieldMapping().map("id", "ID").keepUnmapped(), out);
+ * }
+ * </pre>
+ */
+public final class Converter {
+
+    private Converter() {
+    }
+
+    /**
+     * Copies all records of the reader to the writer. Neither of them is closed.
+     *
+     * @return the number of records copied
+     */
+    public static long convert(RecordReader reader, RecordWriter writer) throws IOException, ParseException {
+        return convert(reader, null, writer);
+    }
+
+    /**
+     * Copies all records of the reader to the writer, passing each one through the mapping. Neither of them is
+     * closed.
+     *
+     * @param mapping the field mapping, or null to copy records unchanged
+     * @return the number of records copied
+     */
+    public static long convert(RecordReader reader, FieldMapping mapping, RecordWriter writer)
+            throws IOException, ParseException {
+        long count = 0;
+        Map<String, Object> record;
+        while (null != (record = reader.read())) {
+            writer.write(null == mapping ? record : mapping.apply(record));
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+}
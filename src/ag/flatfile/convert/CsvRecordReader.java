@@ -0,0 +1,61 @@
+package ag.flatfile.convert;
+
+import ag.flatfile.csv.CsvReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * Reads csv rows as records keyed by the header row, like the keys of a {@link ag.flatfile.csv.CsvMap}, without
+ * holding more than one row. Rows shorter than the header leave their trailing fields missing.
+ */
+public class CsvRecordReader implements RecordReader {
+
+    private final CsvReader csv;
+    private List<String> headers;
+    private int rowIndex = 0;
+
+    public CsvRecordReader(Reader reader) {
+        this.csv = new CsvReader(reader);
+    }
+
+    /**
+     * @return the header row, which is read on the first call
+     */
+    public List<String> getHeaders() throws IOException, ParseException {
+        if (null == headers) {
+            ArrayList<String> row = csv.readRow();
+            headers = null == row ? Collections.emptyList() : Collections.unmodifiableList(row);
+            if (new HashSet<>(headers).size() != headers.size()) {
+                throw new IllegalStateException("Csv has duplicate header columns!");
+            }
+        }
+        return headers;
+    }
+
+    @Override
+    public Map<String, Object> read() throws IOException, ParseException {
+        List<String> keys = getHeaders();
+        ArrayList<String> row = csv.readRow();
+        if (null == row) {
+            return null;
+        }
+        rowIndex++;
+        if (row.size() > keys.size()) {
+            throw new ParseException("Row " + rowIndex + " has " + row.size() + " columns but the header only has "
+                    + keys.size(), rowIndex);
+        }
+        Map<String, Object> record = new LinkedHashMap<>(keys.size() * 2);
+        for (int i = 0; i < row.size(); i++) {
+            record.put(keys.get(i), row.get(i));
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        csv.close();
+    }
+}
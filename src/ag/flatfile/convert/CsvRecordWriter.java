@@ -0,0 +1,116 @@
+package ag.flatfile.convert;
+
+import ag.flatfile.json.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Writes records as csv rows under a header row. The columns are given up front, or taken from the fields of the
+ * first record. Fields missing from a record are written empty and fields that have no column are dropped.
+ * Values are quoted when they contain a separator, quote or line break; {@link JsonObject} values are written
+ * as compact json.
+ */
+public class CsvRecordWriter implements RecordWriter {
+
+    private final Writer writer;
+    private List<String> columns;
+    private boolean hasHeader = false;
+    private final StringBuilder scratch = new StringBuilder();
+
+    public CsvRecordWriter(Writer writer) {
+        this(writer, null);
+    }
+
+    /**
+     * @param columns the header of the csv, or null to use the fields of the first record
+     */
+    public CsvRecordWriter(Writer writer, List<String> columns) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        this.columns = null == columns ? null : List.copyOf(columns);
+    }
+
+    @Override
+    public void write(Map<String, Object> record) throws IOException {
+        if (null == columns) {
+            columns = new ArrayList<>(record.keySet());
+        }
+        if (!hasHeader) {
+            writeHeader();
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = record.get(columns.get(i));
+            if (value instanceof JsonObject) {
+                scratch.setLength(0);
+                JsonRecordWriter.writeValue(scratch, value);
+                writeColumn(scratch.toString());
+            } else if (null != value) {
+                writeColumn(value.toString());
+            }
+        }
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Writes the header if no record was written and the columns are known, then closes the underlying writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!hasHeader && null != columns) {
+                writeHeader();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeColumn(columns.get(i));
+        }
+        writer.write('\n');
+        hasHeader = true;
+    }
+
+    private void writeColumn(String value) throws IOException {
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        int start = 0;
+        int quote;
+        while (-1 != (quote = value.indexOf('"', start))) {
+            // a quote inside a quoted column is written twice
+            writer.write(value, start, quote + 1 - start);
+            writer.write('"');
+            start = quote + 1;
+        }
+        writer.write(value, start, value.length() - start);
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (',' == c || '"' == c || '\n' == c || '\r' == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,73 @@
+package ag.flatfile.convert;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Selects, renames and converts the fields of records on their way from a {@link RecordReader} to a
+ * {@link RecordWriter}. Mapped fields come first, in the order they were mapped. Fields that are not mapped are
+ * dropped, unless {@link #keepUnmapped()} is set, in which case they follow in input order.
+ */
+public class FieldMapping {
+
+    private final List<Field> fields = new ArrayList<>();
+    private final Set<String> mappedNames = new HashSet<>();
+    private boolean isKeepingUnmapped = false;
+
+    private static class Field {
+        private final String from;
+        private final String to;
+        private final Function<Object, Object> converter;
+
+        private Field(String from, String to, Function<Object, Object> converter) {
+            this.from = from;
+            this.to = to;
+            this.converter = converter;
+        }
+    }
+
+    public FieldMapping map(String from, String to) {
+        return map(from, to, null);
+    }
+
+    /**
+     * @param converter applied to the value of each record that has the field, or null to keep the value
+     */
+    public FieldMapping map(String from, String to, Function<Object, Object> converter) {
+        if (null == from || null == to) {
+            throw new NullPointerException("map() field names cannot be null");
+        }
+        fields.add(new Field(from, to, converter));
+        mappedNames.add(from);
+        return this;
+    }
+
+    /**
+     * Also passes on the fields that were not mapped, unchanged.
+     */
+    public FieldMapping keepUnmapped() {
+        isKeepingUnmapped = true;
+        return this;
+    }
+
+    /**
+     * @return the mapped record. Fields that are mapped but missing from the record stay missing.
+     */
+    public Map<String, Object> apply(Map<String, Object> record) {
+        Map<String, Object> mapped = new LinkedHashMap<>(isKeepingUnmapped ? record.size() * 2 : fields.size() * 2);
+        for (Field field : fields) {
+            if (record.containsKey(field.from)) {
+                Object value = record.get(field.from);
+                mapped.put(field.to, null == field.converter ? value : field.converter.apply(value));
+            }
+        }
+        if (isKeepingUnmapped) {
+            for (Map.Entry<String, Object> entry : record.entrySet()) {
+                if (!mappedNames.contains(entry.getKey())) {
+                    mapped.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return mapped;
+    }
+}
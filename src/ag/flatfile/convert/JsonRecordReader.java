@@ -0,0 +1,46 @@
+package ag.flatfile.convert;
+
+import ag.flatfile.json.JsonObject;
+import ag.flatfile.json.JsonStreamReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the objects of a json array, or of newline delimited json, as records of their members. Only the current
+ * object is parsed into memory. Nested arrays and objects are passed on as {@link JsonObject} values.
+ */
+public class JsonRecordReader implements RecordReader {
+
+    private final JsonStreamReader json;
+    private int recordIndex = 0;
+
+    public JsonRecordReader(Reader reader) {
+        this.json = new JsonStreamReader(reader);
+    }
+
+    @Override
+    public Map<String, Object> read() throws IOException, ParseException {
+        JsonObject object = json.next();
+        if (null == object) {
+            return null;
+        }
+        if (!object.isObject()) {
+            throw new ParseException("Json record " + recordIndex + " is not an object", recordIndex);
+        }
+        recordIndex++;
+        Map<String, Object> record = new LinkedHashMap<>(object.size() * 2);
+        for (String key : object.keys()) {
+            record.put(key, object.getMember(key));
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+}
@@ -0,0 +1,149 @@
+package ag.flatfile.convert;
+
+import ag.flatfile.json.JsonObject;
+
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Writes records as compact json objects, either as the elements of one json array or as newline delimited json
+ * (NDJSON), one object per line. Numbers, booleans and {@link JsonObject}s are written as json values, anything
+ * else as a string.
+ */
+public class JsonRecordWriter implements RecordWriter {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+    private final boolean isNdjson;
+    private boolean isStarted = false;
+
+    /**
+     * @param isNdjson true to write one object per line, false to write a json array
+     */
+    public JsonRecordWriter(Writer writer, boolean isNdjson) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        this.isNdjson = isNdjson;
+    }
+
+    @Override
+    public void write(Map<String, Object> record) throws IOException {
+        if (!isNdjson) {
+            writer.write(isStarted ? ",\n" : "[\n");
+        }
+        isStarted = true;
+        writer.write('{');
+        boolean isFirst = true;
+        for (Map.Entry<String, Object> entry : record.entrySet()) {
+            if (!isFirst) {
+                writer.write(',');
+            }
+            isFirst = false;
+            writeString(writer, entry.getKey());
+            writer.write(':');
+            writeValue(writer, entry.getValue());
+        }
+        writer.write('}');
+        if (isNdjson) {
+            writer.write('\n');
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Ends the json array, if one is being written, and closes the underlying writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!isNdjson) {
+                writer.write(isStarted ? "\n]\n" : "[]\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the value as compact json.
+     */
+    static void writeValue(Appendable out, Object value) throws IOException {
+        if (null == value || value instanceof Boolean) {
+            out.append(String.valueOf(value));
+        } else if (value instanceof Number) {
+            boolean isFinite = !(value instanceof Double || value instanceof Float)
+                    || Double.isFinite(((Number) value).doubleValue());
+            out.append(isFinite ? value.toString() : "null");
+        } else if (value instanceof JsonObject) {
+            writeJsonObject(out, (JsonObject) value);
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeJsonObject(Appendable out, JsonObject json) throws IOException {
+        if (json.isArray()) {
+            out.append('[');
+            for (int i = 0; i < json.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writeValue(out, json.getMember(i));
+            }
+            out.append(']');
+            return;
+        }
+        out.append('{');
+        boolean isFirst = true;
+        for (String key : json.keys()) {
+            if (!isFirst) {
+                out.append(',');
+            }
+            isFirst = false;
+            writeString(out, key);
+            out.append(':');
+            writeValue(out, json.getMember(key));
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes a quoted json string. Runs of characters that need no escaping are written in one call.
+     */
+    private static void writeString(Appendable out, String str) throws IOException {
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c >= 0x20 && '"' != c && '\\' != c) {
+                continue;
+            }
+            out.append(str, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        out.append(str, start, str.length()).append('"');
+    }
+}
@@ -0,0 +1,19 @@
+package ag.flatfile.convert;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Map;
+
+/**
+ * Reads records one at a time from a flat file. A record is an ordered set of named fields; the values are
+ * Strings for csv and xml, and the member values for json.
+ */
+public interface RecordReader extends Closeable {
+
+    /**
+     * @return the fields of the next record in input order, or null when there are no more records
+     * @throws ParseException when the input is not a valid record
+     */
+    Map<String, Object> read() throws IOException, ParseException;
+}
@@ -0,0 +1,15 @@
+package ag.flatfile.convert;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes records one at a time as they arrive. Closing the writer completes the document, such as the closing
+ * bracket of a json array, and then closes the underlying writer.
+ */
+public interface RecordWriter extends Closeable, Flushable {
+
+    void write(Map<String, Object> record) throws IOException;
+}
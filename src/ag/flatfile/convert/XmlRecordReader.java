@@ -0,0 +1,87 @@
+package ag.flatfile.convert;
+
+import ag.flatfile.xml.XmlStreamReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the elements at an absolute path, such as {@code /catalog/item}, as records. The fields of a record are
+ * the attributes of its element followed by the trimmed text of each child element, keyed by tag; a repeated
+ * child tag keeps its last text. Elements nested deeper than the children are skipped. A path segment of
+ * {@code *} matches any tag.
+ * <p>
+ * Elements off the path are skipped without being decoded and only the current record is held in memory.
+ */
+public class XmlRecordReader implements RecordReader {
+
+    private static final String PATH_WILDCARD = "*";
+
+    private final XmlStreamReader xml;
+    private final String[] path;
+    private final StringBuilder text = new StringBuilder();
+
+    public XmlRecordReader(Reader reader, String recordPath) {
+        this.xml = new XmlStreamReader(reader);
+        this.path = (recordPath.startsWith("/") ? recordPath.substring(1) : recordPath).split("/", -1);
+        for (String segment : path) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Invalid element path: " + recordPath);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> read() throws IOException {
+        XmlStreamReader.Event event;
+        while (XmlStreamReader.Event.END_DOCUMENT != (event = xml.next())) {
+            if (XmlStreamReader.Event.START_ELEMENT != event) {
+                continue;
+            }
+            // the open ancestors all matched the path, the others were skipped
+            int depth = xml.getDepth();
+            String segment = path[depth - 1];
+            if (!PATH_WILDCARD.equals(segment) && !segment.equals(xml.getTag())) {
+                xml.skipElement();
+            } else if (depth == path.length) {
+                return readRecord(depth);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        xml.close();
+    }
+
+    private Map<String, Object> readRecord(int depth) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>();
+        for (int i = 0; i < xml.getAttributeCount(); i++) {
+            record.put(xml.getAttributeName(i), xml.getAttributeValue(i));
+        }
+        String field = null;
+        while (true) {
+            XmlStreamReader.Event event = xml.next();
+            int eventDepth = xml.getDepth();
+            if (XmlStreamReader.Event.START_ELEMENT == event) {
+                if (depth + 1 == eventDepth) {
+                    field = xml.getTag();
+                    text.setLength(0);
+                } else {
+                    xml.skipElement();
+                }
+            } else if (XmlStreamReader.Event.TEXT == event && depth + 1 == eventDepth) {
+                text.append(xml.getTextCharacters());
+            } else if (XmlStreamReader.Event.END_ELEMENT == event) {
+                if (depth == eventDepth) {
+                    record.put(field, text.toString().strip());
+                } else {
+                    return record;
+                }
+            }
+        }
+    }
+}
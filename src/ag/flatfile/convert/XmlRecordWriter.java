@@ -0,0 +1,113 @@
+package ag.flatfile.convert;
+
+import ag.flatfile.json.JsonObject;
+import ag.flatfile.xml.XmlWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes records as elements under a root element, with one child element per field:
+ * <pre>
+ * &lt;records&gt;&lt;record&gt;&lt;id&gt;1&lt;/id&gt;&lt;name&gt;a&lt;/name&gt;&lt;/record&gt;...&lt;/records&gt;
+ * </pre>
+ * Field names that are not valid xml names have the offending characters replaced by '_'. {@link JsonObject}
+ * objects become nested elements and the values of a json array become repeated elements of the field name.
+ */
+public class XmlRecordWriter implements RecordWriter {
+
+    private final XmlWriter xml;
+    private final String rootTag;
+    private final String recordTag;
+    private boolean isStarted = false;
+
+    public XmlRecordWriter(Writer writer, String rootTag, String recordTag) {
+        this.xml = new XmlWriter(writer);
+        this.rootTag = rootTag;
+        this.recordTag = recordTag;
+    }
+
+    @Override
+    public void write(Map<String, Object> record) throws IOException {
+        start();
+        xml.startElement(recordTag);
+        for (Map.Entry<String, Object> entry : record.entrySet()) {
+            writeField(toName(entry.getKey()), entry.getValue());
+        }
+        xml.endElement();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        xml.flush();
+    }
+
+    /**
+     * Ends the root element and closes the underlying writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            start();
+        } finally {
+            xml.close();
+        }
+    }
+
+    private void start() throws IOException {
+        if (!isStarted) {
+            isStarted = true;
+            xml.declaration().startElement(rootTag);
+        }
+    }
+
+    private void writeField(String tag, Object value) throws IOException {
+        if (!(value instanceof JsonObject)) {
+            xml.startElement(tag);
+            if (null != value) {
+                xml.text(value.toString());
+            }
+            xml.endElement();
+            return;
+        }
+        JsonObject json = (JsonObject) value;
+        if (json.isArray()) {
+            for (int i = 0; i < json.size(); i++) {
+                writeField(tag, json.getMember(i));
+            }
+            return;
+        }
+        xml.startElement(tag);
+        for (String key : json.keys()) {
+            writeField(toName(key), json.getMember(key));
+        }
+        xml.endElement();
+    }
+
+    /**
+     * Replaces the characters that cannot be part of an xml name.
+     */
+    private static String toName(String field) {
+        if (field.isEmpty()) {
+            return "_";
+        }
+        StringBuilder name = null;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            boolean isValid = Character.isLetter(c) || '_' == c
+                    || (i > 0 && (Character.isDigit(c) || '-' == c || '.' == c));
+            if (!isValid && null == name) {
+                name = new StringBuilder(field.length() + 1).append(field, 0, i);
+            }
+            if (null != name) {
+                if (!isValid && 0 == i && Character.isDigit(c)) {
+                    name.append('_').append(c);
+                } else {
+                    name.append(isValid ? c : '_');
+                }
+            }
+        }
+        return null == name ? field : name.toString();
+    }
+}
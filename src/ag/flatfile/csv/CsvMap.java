@@ -1,8 +1,11 @@
 package ag.flatfile.csv;
 
+import ag.flatfile.ParserUtil;
+import ag.flatfile.metrics.ParseMetrics;
 import ag.logger.Logger;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.*;
 
@@ -10,13 +13,50 @@ public class CsvMap {
 
     private final ArrayList<ArrayList<String>> data;
     private final Map<String, Integer> keyMap;
-    private int errorOffset = 0;
 
     public CsvMap(String filename) throws IOException, ParseException {
-        data = readCsv(new File(filename));
+        try (Reader reader = ParserUtil.openFile(filename)) {
+            data = readCsv(reader);
+        }
+        keyMap = genKeyMap();
+    }
+
+    /**
+     * Reads the csv from the reader. The reader is not closed.
+     */
+    public CsvMap(Reader reader) throws IOException, ParseException {
+        data = readCsv(reader);
         keyMap = genKeyMap();
     }
 
+    /**
+     * Reads UTF-8 encoded csv from the stream. The stream is not closed.
+     */
+    public CsvMap(InputStream in) throws IOException, ParseException {
+        this(ParserUtil.toReader(in));
+    }
+
+    /**
+     * Reads UTF-8 encoded csv held in the byte array.
+     */
+    public CsvMap(byte[] bytes) throws IOException, ParseException {
+        this(ParserUtil.toReader(bytes));
+    }
+
+    /**
+     * Reads the UTF-8 encoded csv in the remaining bytes of the buffer. The buffer position is not changed.
+     */
+    public CsvMap(ByteBuffer buffer) throws IOException, ParseException {
+        this(ParserUtil.toReader(buffer));
+    }
+
+    /**
+     * Reads the csv text itself, as opposed to {@link #CsvMap(String)} which opens a file.
+     */
+    public static CsvMap fromString(String csv) throws IOException, ParseException {
+        return new CsvMap(ParserUtil.toStringReader(csv));
+    }
+
     public int rows() {
         return data.size();
     }
@@ -37,6 +77,14 @@ public class CsvMap {
         return data.get(row).get(keyIndex);
     }
 
+    /**
+     * @return the column index of the header key, or -1 when the csv has no such column
+     */
+    public int indexOf(String key) {
+        Integer keyIndex = keyMap.get(key);
+        return null == keyIndex ? -1 : keyIndex;
+    }
+
     public Set<String> keys() {
         return Collections.unmodifiableSet(keyMap.keySet());
     }
@@ -56,146 +104,31 @@ public class CsvMap {
         return keyMap;
     }
 
-    private ArrayList<ArrayList<String>> readCsv(File file) throws IOException, ParseException {
+    private ArrayList<ArrayList<String>> readCsv(Reader reader) throws IOException, ParseException {
         Logger log = Logger.getDefaultLogger();
         ArrayList<ArrayList<String>> csv = new ArrayList<>();
-        OptionalInt expColumns = OptionalInt.empty();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            log.debug("Reading csv row");
-            while (reader.ready()) {
-                csv.add(readRow(reader, expColumns));
-                if (expColumns.isEmpty()) {
-                    expColumns = OptionalInt.of(csv.get(0).size());
-                }
+        CsvReader csvReader = new CsvReader(reader);
+        ParseMetrics.Probe probe = ParseMetrics.start(ParseMetrics.Format.CSV);
+
+        log.debug("Reading csv row");
+        ArrayList<String> row;
+        long cells = 0;
+        try {
+            while (null != (row = csvReader.readRow())) {
+                csv.add(row);
+                cells += row.size();
             }
-        }
-
-        return csv;
-    }
-
-    private ArrayList<String> readRow(Reader reader, OptionalInt expColumns) throws IOException, ParseException {
-        ArrayList<String> row = new ArrayList<>(expColumns.orElse(10));
-        ParseResult col;
-
-        do {
-            col = parseColumn(reader);
-            if (null != col.column) {
-                row.add(col.column);
+        } catch (IOException | ParseException | RuntimeException e) {
+            if (null != probe) {
+                probe.fail(csvReader.getOffset());
             }
-        } while (!col.isEndOfRow);
-        return row;
-    }
-
-    private static class ParseResult {
-        private final boolean isEndOfRow;
-        private final String column;
-
-        public ParseResult(String column, boolean isEndOfRow) {
-            this.column = column;
-            this.isEndOfRow = isEndOfRow;
+            throw e;
         }
-    }
-
-    private abstract static class Processor {
-
-        protected boolean isProcessing = true;
-        protected boolean isEndOfRow = false;
-
-        abstract boolean process(Reader reader, int charCode) throws IOException, ParseException;
-
-        boolean isProcessing() {
-            return isProcessing;
-        }
-
-        public boolean isEndOfRow() {
-            return isEndOfRow;
-        }
-    }
-
-    private class QuotedProcessor extends Processor {
-        @Override
-        public boolean process(Reader reader, int charCode) throws IOException, ParseException {
-            if (-1 == charCode) {
-                throw new IOException("Found end of file before finding end of quoted column");
-            }
-            if ('"' == charCode) {
-                switch (peek(reader)) {
-                    case '"':
-                        // skip escaped quote
-                        skip(reader, 1);
-                        break;
-                    case '\n':
-                        isEndOfRow = true;
-                    case ',':
-                        skip(reader, 1);
-                    case -1:
-                        // exit processing (without appending quote), found end of quoted string
-                        isProcessing = false;
-                        return false;
-                    default:
-                        throw new ParseException("Found excess characters after end of quoted column ("
-                                + errorOffset + ")", errorOffset);
-                }
-            }
-            return true;
-        }
-    }
-
-    private class UnquotedProcessor extends Processor {
-        @Override
-        public boolean process(Reader reader, int charCode) throws IOException, ParseException {
-            switch (charCode) {
-                case '"':
-                    // illegal char in unquoted column
-                    throw new ParseException("Unquoted columns cannot contain quotes (" + errorOffset + ")", errorOffset);
-                case '\n':
-                    isEndOfRow = true;
-                case ',':
-                case -1:
-                    isProcessing = false;
-                    return false;
-            }
-            return true;
-        }
-    }
-
-    private ParseResult parseColumn(Reader reader) throws IOException, ParseException {
-        StringBuilder col = new StringBuilder();
-        if (!reader.ready()) {
-            return new ParseResult(null, true);
-        }
-        boolean isQuoted = '"' == peek(reader);
-        Processor processor = isQuoted ? new QuotedProcessor() : new UnquotedProcessor();
-        if (isQuoted) {
-            // skip the initial quote
-            skip(reader, 1);
-        }
-        int charCode;
-
-        while (processor.isProcessing() && reader.ready()) {
-            charCode = reader.read();
-            errorOffset++;
-            if (processor.process(reader, charCode)) {
-                col.append((char)charCode);
-            }
+        if (null != probe) {
+            probe.finish(csvReader.getOffset(), csv.size(), csv.isEmpty() ? 0 : 1, cells);
         }
 
-        return new ParseResult(col.toString(), processor.isEndOfRow());
-    }
-
-    private int peek(Reader reader) throws IOException {
-        reader.mark(1);
-        int c = reader.read();
-        reader.reset();
-        return c;
-    }
-
-    private void skip(Reader reader, int n) throws IOException {
-        if (n != reader.skip(n)) {
-            throw new IOException("Failed to skip correct number of chars");
-        }
-        errorOffset += n;
+        return csv;
     }
 
 }
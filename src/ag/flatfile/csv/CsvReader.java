@@ -0,0 +1,127 @@
+package ag.flatfile.csv;
+
+import ag.flatfile.CharClass;
+import ag.flatfile.CharScanner;
+
+import java.io.*;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.OptionalInt;
+
+/**
+ * Reads csv one row at a time, without keeping the rows that were already returned. {@link CsvMap} is built on
+ * top of it; use it directly to stream files that should not be held in memory.
+ * <p>
+ * A CsvReader keeps the parse position of its source and is not thread safe.
+ */
+public class CsvReader implements Closeable {
+
+    private static final char CSV_SEP = ',';
+    private static final char CSV_QUOTE = '"';
+    private static final char CSV_ROW_END = '\n';
+
+    private static final CharClass unquotedEnd = CharClass.of(",\n\"");
+    private static final CharClass quotedEnd = CharClass.of("\"");
+
+    private final CharScanner scanner;
+    private final StringBuilder column = new StringBuilder();
+    private OptionalInt expColumns = OptionalInt.empty();
+
+    public CsvReader(Reader reader) {
+        this.scanner = new CharScanner(reader);
+    }
+
+    /**
+     * Reads the next row of the csv.
+     *
+     * @return the columns of the row, or null when the end of the input has been reached
+     * @throws ParseException when the row is not valid csv
+     */
+    public ArrayList<String> readRow() throws IOException, ParseException {
+        if (-1 == scanner.peek()) {
+            return null;
+        }
+        ArrayList<String> row = new ArrayList<>(expColumns.orElse(10));
+        boolean isEndOfRow = false;
+        // a separator directly before the end of the input does not start another column
+        while (!isEndOfRow && -1 != scanner.peek()) {
+            column.setLength(0);
+            isEndOfRow = CSV_QUOTE == scanner.peek() ? readQuotedColumn() : readUnquotedColumn();
+            row.add(column.toString());
+        }
+        if (expColumns.isEmpty()) {
+            expColumns = OptionalInt.of(row.size());
+        }
+        return row;
+    }
+
+    /**
+     * @return the number of characters consumed so far
+     */
+    public long getOffset() {
+        return scanner.getOffset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+
+    /**
+     * Reads a column and the separator after it.
+     *
+     * @return true if the column was the last of its row
+     */
+    private boolean readUnquotedColumn() throws IOException, ParseException {
+        switch (scanner.readUntil(unquotedEnd, column)) {
+            case CSV_QUOTE:
+                int errorOffset = (int) scanner.getOffset();
+                throw new ParseException("Unquoted columns cannot contain quotes (" + errorOffset + ")", errorOffset);
+            case CSV_SEP:
+                scanner.read();
+                return false;
+            case CSV_ROW_END:
+                scanner.read();
+                return true;
+            default:
+                // end of the input
+                return true;
+        }
+    }
+
+    /**
+     * Reads a quoted column, where a doubled quote stands for one quote character, and the separator after it.
+     *
+     * @return true if the column was the last of its row
+     */
+    private boolean readQuotedColumn() throws IOException, ParseException {
+        // skip the initial quote
+        scanner.read();
+        while (true) {
+            if (-1 == scanner.readUntil(quotedEnd, column)) {
+                throw new IOException("Found end of file before finding end of quoted column");
+            }
+            scanner.read();
+            switch (scanner.peek()) {
+                case CSV_QUOTE:
+                    // escaped quote
+                    scanner.read();
+                    column.append(CSV_QUOTE);
+                    break;
+                case CSV_SEP:
+                    scanner.read();
+                    return false;
+                case CSV_ROW_END:
+                    scanner.read();
+                    return true;
+                case -1:
+                    return true;
+                default:
+                    int errorOffset = (int) scanner.getOffset();
+                    throw new ParseException("Found excess characters after end of quoted column ("
+                            + errorOffset + ")", errorOffset);
+            }
+        }
+    }
+
+}
@@ -1,10 +1,20 @@
 package ag.flatfile.json;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
 public class JsonObject {
+    // array members are keyed by their index, so the common indices share one String each
+    private static final String[] indexKeys = new String[1024];
+
+    static {
+        for (int i = 0; i < indexKeys.length; i++) {
+            indexKeys[i] = Integer.toString(i);
+        }
+    }
+
     private final Map<String, Object> values;
     private final Type type;
 
@@ -26,6 +36,10 @@ public class JsonObject {
         }
     }
 
+    public boolean hasMember(String name) {
+        return Type.OBJECT == type && values.containsKey(name);
+    }
+
     public Object getMember(String name) {
         if (Type.OBJECT != type) {
             throw new JsonTypeException("Cannot lookup named variables from an array. Must be an Object type.");
@@ -42,11 +56,15 @@ public class JsonObject {
         if (Type.ARRAY != type) {
             throw new JsonTypeException("Cannot lookup indexed values from an Object. Must be an Array type.");
         }
-        String mapIndex = "" + index;
+        String mapIndex = indexKey(index);
         validateMember(mapIndex);
         return values.get(mapIndex);
     }
 
+    static String indexKey(int index) {
+        return index >= 0 && index < indexKeys.length ? indexKeys[index] : Integer.toString(index);
+    }
+
     public JsonObject get(int index) {
         return (JsonObject) getMember(index);
     }
@@ -60,7 +78,7 @@ public class JsonObject {
     }
 
     public Set<String> keys() {
-        return values.keySet();
+        return Collections.unmodifiableSet(values.keySet());
     }
 
     public int size() {
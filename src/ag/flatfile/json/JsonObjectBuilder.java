@@ -19,7 +19,7 @@ public class JsonObjectBuilder {
 
     public JsonObjectBuilder add(int index, Object value) {
         validateIsArray();
-        values.put("" + index, value);
+        values.put(JsonObject.indexKey(index), value);
         return this;
     }
 
@@ -35,7 +35,7 @@ public class JsonObjectBuilder {
 
     public JsonObjectBuilder addArray(int index) {
         validateIsArray();
-        values.put("" + index, new JsonObjectBuilder(JsonObject.Type.ARRAY));
+        values.put(JsonObject.indexKey(index), new JsonObjectBuilder(JsonObject.Type.ARRAY));
         return this;
     }
 
@@ -51,7 +51,7 @@ public class JsonObjectBuilder {
 
     public JsonObjectBuilder addObject(int index) {
         validateIsArray();
-        values.put("" + index, new JsonObjectBuilder(JsonObject.Type.OBJECT));
+        values.put(JsonObject.indexKey(index), new JsonObjectBuilder(JsonObject.Type.OBJECT));
         return this;
     }
 
@@ -66,7 +66,7 @@ public class JsonObjectBuilder {
 
     public JsonObjectBuilder get(int index) {
         validateIsArray();
-        return get("" + index);
+        return (JsonObjectBuilder) values.get(JsonObject.indexKey(index));
     }
 
     public boolean isArray() {
@@ -78,17 +78,14 @@ public class JsonObjectBuilder {
     }
 
     public JsonObject build() {
-        values.entrySet().stream()
-                .filter(e -> e.getValue() instanceof JsonObjectBuilder)
-                .forEach(this::buildAndReplace);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() instanceof JsonObjectBuilder) {
+                entry.setValue(((JsonObjectBuilder) entry.getValue()).build());
+            }
+        }
         return new JsonObject(type, values);
     }
 
-    private void buildAndReplace(Map.Entry<String, Object> entry) {
-        JsonObjectBuilder toBuild = (JsonObjectBuilder) entry.getValue();
-        values.put(entry.getKey(), toBuild.build());
-    }
-
     private void validateIsObject() {
         if (!isObject()) {
             throw new JsonTypeException("Cannot add a mapping to a non-object");
@@ -1,10 +1,21 @@
 package ag.flatfile.json;
 
+import ag.flatfile.CharClass;
+import ag.flatfile.CharScanner;
 import ag.flatfile.ParserUtil;
+import ag.flatfile.metrics.ParseMetrics;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
+/**
+ * Parses json text into {@link JsonObject}s.
+ * <p>
+ * A JsonParser holds no per-parse state, so a single instance can be shared by many threads. The token queue,
+ * string builder and scanner window used while parsing are kept per thread and reused between calls, which
+ * leaves the parsed result as nearly the only garbage a parse produces.
+ */
 public class JsonParser {
 
     private static final char JSON_ARRAY_START = '[';
@@ -13,7 +24,9 @@ public class JsonParser {
     private static final char JSON_OBJECT_END = '}';
     private static final char JSON_ASSIGN = ':';
     private static final char JSON_VALUE_SEP = ',';
-    private static final String literalSeparators = ",";
+    // a literal ends at the next separator, the end of its container or whitespace
+    private static final CharClass literalEnd = CharClass.of(",]}").withWhitespace();
+    private static final CharClass stringEnd = CharClass.of("\"\\");
 
     private static final char JSON_STRING_SEP = '"';
     private static final char JSON_ESCAPE = '\\';
@@ -21,6 +34,7 @@ public class JsonParser {
     private static final String JSON_LITERAL_TRUE = "true";
     private static final String JSON_LITERAL_FALSE = "false";
     private static final String JSON_LITERAL_NULL = "null";
+    private static final String JSON_LITERAL_NUMBER = "number";
 
     private static final Set<Character> jsonOperators = Set.of(
             JSON_ARRAY_START,
@@ -31,6 +45,11 @@ public class JsonParser {
             JSON_VALUE_SEP
     );
 
+    // scratch builders that grew past this are dropped instead of being kept alive by the thread
+    private static final int MAX_RETAINED_SCRATCH = 1 << 16;
+
+    private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
     private enum TokenType {
         STRING, LITERAL, OPERATOR
     }
@@ -38,13 +57,19 @@ public class JsonParser {
     private static class JsonToken {
         public final String token;
         public final TokenType type;
+        public final Object value;
 
         public JsonToken(String token, TokenType type) {
+            this(token, type, token);
+        }
+
+        public JsonToken(String token, TokenType type, Object value) {
             if (null == type || null == token) {
                 throw new IllegalStateException("JsonToken with null Token (" + token + ") or TokenType (" + type + ")");
             }
             this.token = token;
             this.type = type;
+            this.value = value;
         }
 
         @Override
@@ -52,7 +77,7 @@ public class JsonParser {
             if (TokenType.STRING == type) {
                 return '"' + token + '"';
             } else if (TokenType.LITERAL == type) {
-                return "'" + token + "'";
+                return "'" + value + "'";
             } else if (TokenType.OPERATOR == type) {
                 return '<' + token + '>';
             }
@@ -60,14 +85,127 @@ public class JsonParser {
         }
     }
 
+    private static final JsonToken[] operatorTokens = new JsonToken[128];
+    private static final JsonToken TRUE_TOKEN = new JsonToken(JSON_LITERAL_TRUE, TokenType.LITERAL, true);
+    private static final JsonToken FALSE_TOKEN = new JsonToken(JSON_LITERAL_FALSE, TokenType.LITERAL, false);
+    private static final JsonToken NULL_TOKEN = new JsonToken(JSON_LITERAL_NULL, TokenType.LITERAL, null);
+
+    static {
+        for (char op : jsonOperators) {
+            operatorTokens[op] = new JsonToken(String.valueOf(op), TokenType.OPERATOR);
+        }
+    }
+
+    /**
+     * Per thread buffers reused by every parse on that thread.
+     */
+    private static class Scratch {
+        private final ArrayDeque<JsonToken> tokens = new ArrayDeque<>();
+        private StringBuilder text = new StringBuilder();
+        private final char[] window = new char[CharScanner.DEFAULT_WINDOW_SIZE];
+        private boolean inUse = false;
+        // parse figures for ParseMetrics
+        private int peakDepth = 0;
+        private long strings = 0;
+
+        private StringBuilder text() {
+            text.setLength(0);
+            return text;
+        }
+
+        private void release() {
+            tokens.clear();
+            if (text.capacity() > MAX_RETAINED_SCRATCH) {
+                text = new StringBuilder();
+            }
+            peakDepth = 0;
+            strings = 0;
+            inUse = false;
+        }
+    }
+
     public JsonObject parse(String filename) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            LinkedList<JsonToken> tokens = tokenize(reader);
-            return buildJson(tokens);
+        try (Reader reader = ParserUtil.openFile(filename)) {
+            return parse(reader);
         }
     }
 
-    private JsonObject buildJson(LinkedList<JsonToken> tokens) {
+    /**
+     * Parses the json read from the reader. The reader is not closed.
+     */
+    public JsonObject parse(Reader reader) throws IOException {
+        Scratch parseScratch = acquireScratch();
+        CharScanner scanner = new CharScanner(reader, parseScratch.window);
+        ParseMetrics.Probe probe = ParseMetrics.start(ParseMetrics.Format.JSON);
+        try {
+            tokenize(scanner, parseScratch, false);
+            int tokenCount = parseScratch.tokens.size();
+            JsonObject json = buildJson(parseScratch.tokens);
+            if (null != probe) {
+                probe.finish(scanner.getOffset(), tokenCount, parseScratch.peakDepth, parseScratch.strings);
+            }
+            return json;
+        } catch (IOException | RuntimeException e) {
+            if (null != probe) {
+                probe.fail(scanner.getOffset());
+            }
+            throw e;
+        } finally {
+            parseScratch.release();
+        }
+    }
+
+    /**
+     * Parses the next complete array or object from the scanner and leaves the scanner directly after it,
+     * so a stream of values can be parsed one at a time.
+     */
+    JsonObject parseValue(CharScanner scanner) throws IOException {
+        Scratch parseScratch = acquireScratch();
+        try {
+            tokenize(scanner, parseScratch, true);
+            return buildJson(parseScratch.tokens);
+        } finally {
+            parseScratch.release();
+        }
+    }
+
+    /**
+     * Parses UTF-8 encoded json read from the stream. The stream is not closed.
+     */
+    public JsonObject parse(InputStream in) throws IOException {
+        return parse(ParserUtil.toReader(in));
+    }
+
+    /**
+     * Parses UTF-8 encoded json held in the byte array.
+     */
+    public JsonObject parse(byte[] bytes) throws IOException {
+        return parse(ParserUtil.toReader(bytes));
+    }
+
+    /**
+     * Parses the UTF-8 encoded json in the remaining bytes of the buffer. The buffer position is not changed.
+     */
+    public JsonObject parse(ByteBuffer buffer) throws IOException {
+        return parse(ParserUtil.toReader(buffer));
+    }
+
+    /**
+     * Parses the json text itself, as opposed to {@link #parse(String)} which opens a file.
+     */
+    public JsonObject parseString(String json) throws IOException {
+        return parse(ParserUtil.toStringReader(json));
+    }
+
+    private static Scratch acquireScratch() {
+        Scratch threadScratch = scratch.get();
+        // a parse nested inside another one on the same thread gets its own buffers
+        Scratch parseScratch = threadScratch.inUse ? new Scratch() : threadScratch;
+        parseScratch.inUse = true;
+        return parseScratch;
+    }
+
+    private JsonObject buildJson(ArrayDeque<JsonToken> tokens) {
         try {
             return buildOperator(tokens.pop(), tokens).build();
         } catch (NoSuchElementException e) {
@@ -75,7 +213,7 @@ public class JsonParser {
         }
     }
 
-    private JsonObjectBuilder buildOperator(JsonToken token, LinkedList<JsonToken> tokens) {
+    private JsonObjectBuilder buildOperator(JsonToken token, ArrayDeque<JsonToken> tokens) {
         if (TokenType.OPERATOR != token.type) {
             throw new JsonParseException("Did not parse a valid starting Operator: " + token);
         }
@@ -90,10 +228,10 @@ public class JsonParser {
         }
     }
 
-    private JsonObjectBuilder buildArray(LinkedList<JsonToken> tokens) {
+    private JsonObjectBuilder buildArray(ArrayDeque<JsonToken> tokens) {
         JsonObjectBuilder parent = new JsonObjectBuilder(JsonObject.Type.ARRAY);
         JsonToken token;
-        boolean isBuilding = true;
+        boolean isBuilding = !isEmpty(tokens, JSON_ARRAY_END);
         while (isBuilding) {
             token = tokens.pop();
             if (TokenType.OPERATOR == token.type) {
@@ -111,10 +249,10 @@ public class JsonParser {
         return parent;
     }
 
-    private JsonObjectBuilder buildObject(LinkedList<JsonToken> tokens) {
+    private JsonObjectBuilder buildObject(ArrayDeque<JsonToken> tokens) {
         JsonObjectBuilder parent =  new JsonObjectBuilder(JsonObject.Type.OBJECT);
         JsonToken token;
-        boolean isBuilding = true;
+        boolean isBuilding = !isEmpty(tokens, JSON_OBJECT_END);
         while (isBuilding) {
             token = tokens.pop();
             if (TokenType.STRING != token.type){
@@ -145,52 +283,140 @@ public class JsonParser {
     }
 
     private Object buildValue(JsonToken token) {
-        if (TokenType.STRING == token.type) {
-            return token.token;
-        } else if (TokenType.LITERAL == token.type) {
-            switch (token.token) {
-                case JSON_LITERAL_FALSE:
-                    return false;
-                case JSON_LITERAL_TRUE:
-                    return true;
-                case JSON_LITERAL_NULL:
-                    return null;
-            }
-            boolean isDouble = token.token.contains(".") || token.token.contains("e");
-            try {
-                if (isDouble) {
-                    return Double.parseDouble(token.token);
-                }
-                return Integer.parseInt(token.token);
-            } catch (NumberFormatException e) {
-                throw new JsonParseException("Invalid literal value: " + token.token);
-            }
+        if (TokenType.OPERATOR != token.type) {
+            return token.value;
         }
         throw new JsonParseException("Tried to build value from Json operator: " + token);
     }
 
+    /**
+     * Consumes the end operator if the container is closed directly after it was opened.
+     */
+    private boolean isEmpty(ArrayDeque<JsonToken> tokens, char endOperator) {
+        JsonToken next = tokens.peek();
+        if (null == next || isNotJsonOperator(next, endOperator)) {
+            return false;
+        }
+        tokens.pop();
+        return true;
+    }
+
     private boolean isNotJsonOperator(JsonToken token, char operator) {
         return TokenType.OPERATOR != token.type || token.token.charAt(0) != operator;
     }
 
-    private LinkedList<JsonToken> tokenize(Reader reader) throws IOException {
-        LinkedList<JsonToken> tokens = new LinkedList<>();
-        while (reader.ready()) {
-            int c = reader.read();
-            if (-1 == c) {
-                throw new IllegalStateException("Hit EOF while reader was ready");
-            }
-            if (!Character.isWhitespace(c)) {
-                if (jsonOperators.contains((char)c)) {
-                    tokens.addLast(new JsonToken("" + (char)c, TokenType.OPERATOR));
-                } else if (JSON_STRING_SEP == c) {
-                    tokens.addLast(new JsonToken(ParserUtil.readString(reader, JSON_STRING_SEP, JSON_ESCAPE), TokenType.STRING));
-                } else {
-                    tokens.addLast(new JsonToken((char)c + ParserUtil.readLiteral(reader, literalSeparators), TokenType.LITERAL));
+    /**
+     * @param isSingleValue true to stop once the first array or object is closed, instead of at the end of input
+     */
+    private void tokenize(CharScanner scanner, Scratch scratch, boolean isSingleValue) throws IOException {
+        ArrayDeque<JsonToken> tokens = scratch.tokens;
+        int depth = 0;
+        while (-1 != scanner.skip(CharClass.WHITESPACE)) {
+            int c = scanner.read();
+            JsonToken operator = c < operatorTokens.length ? operatorTokens[c] : null;
+            if (null != operator) {
+                tokens.addLast(operator);
+                if (JSON_ARRAY_START == c || JSON_OBJECT_START == c) {
+                    if (++depth > scratch.peakDepth) {
+                        scratch.peakDepth = depth;
+                    }
+                } else if ((JSON_ARRAY_END == c || JSON_OBJECT_END == c) && 0 == --depth && isSingleValue) {
+                    return;
                 }
+            } else if (JSON_STRING_SEP == c) {
+                StringBuilder str = scratch.text();
+                readString(scanner, str);
+                tokens.addLast(new JsonToken(str.toString(), TokenType.STRING));
+                scratch.strings++;
+            } else {
+                StringBuilder literal = scratch.text().append((char)c);
+                scanner.readUntil(literalEnd, literal);
+                JsonToken token = toLiteralToken(literal);
+                // decimal literals are the only ones that are turned into a String
+                if (token.value instanceof Double) {
+                    scratch.strings++;
+                }
+                tokens.addLast(token);
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a string token, the opening quote has already been read. Escape sequences are decoded.
+     */
+    private void readString(CharScanner scanner, StringBuilder str) throws IOException {
+        while (JSON_ESCAPE == scanner.readUntil(stringEnd, str)) {
+            scanner.read();
+            int escaped = scanner.read();
+            switch (escaped) {
+                case 'n':
+                    str.append('\n');
+                    break;
+                case 'r':
+                    str.append('\r');
+                    break;
+                case 't':
+                    str.append('\t');
+                    break;
+                case 'b':
+                    str.append('\b');
+                    break;
+                case 'f':
+                    str.append('\f');
+                    break;
+                case 'u':
+                    str.append(readUnicodeEscape(scanner));
+                    break;
+                case -1:
+                    throw new JsonParseException("Found end of input inside a string escape");
+                default:
+                    // \", \\ and \/ stand for the char itself
+                    str.append((char) escaped);
+            }
+        }
+        // the closing quote, which is missing when the input ended inside the string
+        scanner.read();
+    }
+
+    private char readUnicodeEscape(CharScanner scanner) throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(scanner.read(), 16);
+            if (digit < 0) {
+                throw new JsonParseException("Invalid \\u escape in string at offset " + scanner.getOffset());
             }
+            value = value * 16 + digit;
         }
-        return tokens;
+        return (char) value;
+    }
+
+    /**
+     * Converts the literal while it is still in the scratch builder, so keywords and integers never become
+     * intermediate Strings.
+     */
+    private JsonToken toLiteralToken(StringBuilder literal) {
+        if (contentEquals(literal, JSON_LITERAL_TRUE)) {
+            return TRUE_TOKEN;
+        } else if (contentEquals(literal, JSON_LITERAL_FALSE)) {
+            return FALSE_TOKEN;
+        } else if (contentEquals(literal, JSON_LITERAL_NULL)) {
+            return NULL_TOKEN;
+        }
+        boolean isDouble = literal.indexOf(".") >= 0 || literal.indexOf("e") >= 0;
+        try {
+            if (isDouble) {
+                String str = literal.toString();
+                return new JsonToken(str, TokenType.LITERAL, Double.parseDouble(str));
+            }
+            int value = Integer.parseInt(literal, 0, literal.length(), 10);
+            return new JsonToken(JSON_LITERAL_NUMBER, TokenType.LITERAL, value);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException("Invalid literal value: " + literal);
+        }
+    }
+
+    private static boolean contentEquals(StringBuilder sb, String str) {
+        return sb.length() == str.length() && str.contentEquals(sb);
     }
 
 }
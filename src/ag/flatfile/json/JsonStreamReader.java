@@ -0,0 +1,88 @@
+package ag.flatfile.json;
+
+import ag.flatfile.CharClass;
+import ag.flatfile.CharScanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a sequence of json values one at a time, so only the current value is ever held in memory. The input is
+ * either a top-level array, whose elements are returned one by one, or newline delimited json (NDJSON), a series
+ * of top-level values separated by whitespace. Each value must be an array or an object.
+ * <p>
+ * A JsonStreamReader keeps the parse position of its source and is not thread safe.
+ */
+public class JsonStreamReader implements Closeable {
+
+    private static final char JSON_ARRAY_START = '[';
+    private static final char JSON_ARRAY_END = ']';
+    private static final char JSON_OBJECT_START = '{';
+    private static final char JSON_VALUE_SEP = ',';
+
+    private final CharScanner scanner;
+    private final JsonParser parser = new JsonParser();
+    private boolean isStarted = false;
+    private boolean isArray = false;
+    private boolean isEnded = false;
+
+    public JsonStreamReader(Reader reader) {
+        this.scanner = new CharScanner(reader);
+    }
+
+    /**
+     * @return the next value, or null when the input has no more values
+     */
+    public JsonObject next() throws IOException {
+        if (isEnded) {
+            return null;
+        }
+        int c = scanner.skip(CharClass.WHITESPACE);
+        if (!isStarted) {
+            isStarted = true;
+            isArray = JSON_ARRAY_START == c;
+            if (isArray) {
+                scanner.read();
+                c = scanner.skip(CharClass.WHITESPACE);
+                if (JSON_ARRAY_END == c) {
+                    scanner.read();
+                    isEnded = true;
+                    return null;
+                }
+                return readValue(c);
+            }
+        } else if (isArray) {
+            scanner.read();
+            if (JSON_ARRAY_END == c) {
+                isEnded = true;
+                return null;
+            } else if (JSON_VALUE_SEP != c) {
+                throw new JsonParseException("Expected ',' or ']' between array values but found " + describe(c));
+            }
+            c = scanner.skip(CharClass.WHITESPACE);
+        }
+        if (-1 == c && !isArray) {
+            isEnded = true;
+            return null;
+        }
+        return readValue(c);
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+
+    private JsonObject readValue(int c) throws IOException {
+        if (JSON_ARRAY_START != c && JSON_OBJECT_START != c) {
+            throw new JsonParseException("Expected an array or object value but found " + describe(c)
+                    + " at offset " + scanner.getOffset());
+        }
+        return parser.parseValue(scanner);
+    }
+
+    private static String describe(int c) {
+        return -1 == c ? "end of input" : "'" + (char) c + "'";
+    }
+}
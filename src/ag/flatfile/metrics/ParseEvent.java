@@ -0,0 +1,38 @@
+package ag.flatfile.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one parse. Enable it in a recording with {@code ag.flatfile.Parse#enabled=true}
+ * or through a JFR settings file; while it is not enabled it costs nothing.
+ */
+@Name("ag.flatfile.Parse")
+@Label("Parse")
+@Category({"ag", "Flat File"})
+@Description("A csv, json or xml parse")
+final class ParseEvent extends Event {
+
+    @Label("Format")
+    String format;
+
+    @Label("Chars")
+    long chars;
+
+    @Label("Records")
+    @Description("Rows for csv, tokens for json, elements for xml")
+    long records;
+
+    @Label("Peak Depth")
+    int peakDepth;
+
+    @Label("Strings")
+    @Description("String objects created for values")
+    long strings;
+
+    @Label("Failed")
+    boolean failed;
+}
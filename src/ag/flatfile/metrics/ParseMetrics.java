@@ -0,0 +1,179 @@
+package ag.flatfile.metrics;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collects {@link ParseStats} of the csv, json and xml parsers. Collection is off by default; while it is off,
+ * and no Flight Recorder recording has the {@code ag.flatfile.Parse} event enabled, a parse pays a single check.
+ * The parsers count from state they keep anyway, so even enabled collection adds nothing per char or token.
+ * <p>
+ * Totals are kept in striped counters, so many parsing threads do not contend on them and any thread can read
+ * them at any time. Listeners receive the stats of every single parse, on the parsing thread.
+ * <pre>
+ * ParseMetrics.enable();
+ * ParseMetrics.addListener(stats -&gt; log.debug(stats::toString));
+ * ...
+ * ParseStats json = ParseMetrics.getTotals(ParseMetrics.Format.JSON);
+ * </pre>
+ */
+public final class ParseMetrics {
+
+    public enum Format {
+        CSV, JSON, XML
+    }
+
+    private static volatile boolean isEnabled = false;
+    private static final Map<Format, Totals> totals = new EnumMap<>(Format.class);
+    private static final List<Consumer<ParseStats>> listeners = new CopyOnWriteArrayList<>();
+
+    static {
+        for (Format format : Format.values()) {
+            totals.put(format, new Totals());
+        }
+    }
+
+    private static class Totals {
+        private final LongAdder parses = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder chars = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder strings = new LongAdder();
+        private final LongAccumulator peakDepth = new LongAccumulator(Math::max, 0);
+    }
+
+    private ParseMetrics() {
+    }
+
+    public static void enable() {
+        isEnabled = true;
+    }
+
+    public static void disable() {
+        isEnabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * @return the totals of all parses of the format since collection started or was last reset
+     */
+    public static ParseStats getTotals(Format format) {
+        Totals counters = totals.get(format);
+        return new ParseStats(format, counters.parses.sum(), counters.errors.sum(), counters.chars.sum(),
+                counters.records.sum(), counters.nanos.sum(), (int) counters.peakDepth.get(),
+                counters.strings.sum());
+    }
+
+    public static void reset() {
+        for (Totals counters : totals.values()) {
+            counters.parses.reset();
+            counters.errors.reset();
+            counters.chars.reset();
+            counters.records.reset();
+            counters.nanos.reset();
+            counters.strings.reset();
+            counters.peakDepth.reset();
+        }
+    }
+
+    /**
+     * Registers a listener for the stats of each parse. Listeners are only called while collection is enabled.
+     */
+    public static void addListener(Consumer<ParseStats> listener) {
+        if (null == listener) {
+            throw new NullPointerException("ParseMetrics listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Consumer<ParseStats> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Called by a parser when it starts.
+     *
+     * @return the probe to report the finished parse to, or null when nobody is interested in it
+     */
+    public static Probe start(Format format) {
+        ParseEvent event = new ParseEvent();
+        boolean isRecording = event.isEnabled();
+        if (!isEnabled && !isRecording) {
+            return null;
+        }
+        return new Probe(format, isEnabled, isRecording ? event : null);
+    }
+
+    /**
+     * Measures one parse. Exactly one of finish() or fail() is called when the parse ends.
+     */
+    public static final class Probe {
+        private final Format format;
+        private final boolean isCollecting;
+        private final ParseEvent event;
+        private final long start;
+
+        private Probe(Format format, boolean isCollecting, ParseEvent event) {
+            this.format = format;
+            this.isCollecting = isCollecting;
+            this.event = event;
+            if (null != event) {
+                event.begin();
+            }
+            this.start = System.nanoTime();
+        }
+
+        public void finish(long chars, long records, int peakDepth, long strings) {
+            report(false, chars, records, peakDepth, strings);
+        }
+
+        public void fail(long chars) {
+            report(true, chars, 0, 0, 0);
+        }
+
+        private void report(boolean isFailed, long chars, long records, int peakDepth, long strings) {
+            long elapsed = System.nanoTime() - start;
+            if (null != event) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.format = format.name();
+                    event.chars = chars;
+                    event.records = records;
+                    event.peakDepth = peakDepth;
+                    event.strings = strings;
+                    event.failed = isFailed;
+                    event.commit();
+                }
+            }
+            if (!isCollecting) {
+                return;
+            }
+            Totals counters = totals.get(format);
+            counters.parses.increment();
+            if (isFailed) {
+                counters.errors.increment();
+            }
+            counters.chars.add(chars);
+            counters.records.add(records);
+            counters.nanos.add(elapsed);
+            counters.strings.add(strings);
+            counters.peakDepth.accumulate(peakDepth);
+            if (!listeners.isEmpty()) {
+                ParseStats stats = new ParseStats(format, 1, isFailed ? 1 : 0, chars, records, elapsed,
+                        peakDepth, strings);
+                for (Consumer<ParseStats> listener : listeners) {
+                    listener.accept(stats);
+                }
+            }
+        }
+    }
+}
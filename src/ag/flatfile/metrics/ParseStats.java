@@ -0,0 +1,90 @@
+package ag.flatfile.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The figures of a single parse, or the totals of all parses of one format as returned by
+ * {@link ParseMetrics#getTotals(ParseMetrics.Format)}.
+ * <p>
+ * What counts as a record depends on the format: a row for csv, a token for json and an element for xml. Strings
+ * counts the String objects the parser created for values, which is where nearly all of the garbage of a parse
+ * comes from. Sizes are counted in chars, as that is what the parsers read; for ascii input it equals the bytes.
+ */
+public final class ParseStats {
+
+    private final ParseMetrics.Format format;
+    private final long parses;
+    private final long errors;
+    private final long chars;
+    private final long records;
+    private final long elapsedNanos;
+    private final int peakDepth;
+    private final long strings;
+
+    ParseStats(ParseMetrics.Format format, long parses, long errors, long chars, long records, long elapsedNanos,
+               int peakDepth, long strings) {
+        this.format = format;
+        this.parses = parses;
+        this.errors = errors;
+        this.chars = chars;
+        this.records = records;
+        this.elapsedNanos = elapsedNanos;
+        this.peakDepth = peakDepth;
+        this.strings = strings;
+    }
+
+    public ParseMetrics.Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the number of parses, including failed ones. Always 1 for the stats of a single parse
+     */
+    public long getParses() {
+        return parses;
+    }
+
+    /**
+     * @return the number of parses that failed
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getChars() {
+        return chars;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the deepest nesting of arrays, objects or elements seen
+     */
+    public int getPeakDepth() {
+        return peakDepth;
+    }
+
+    public long getStrings() {
+        return strings;
+    }
+
+    /**
+     * @return the parse throughput in chars per second, or 0 when no time was measured
+     */
+    public double getCharsPerSecond() {
+        return 0 == elapsedNanos ? 0 : chars * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return format + " parses=" + parses + " errors=" + errors + " chars=" + chars + " records=" + records
+                + " elapsedMs=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " peakDepth=" + peakDepth
+                + " strings=" + strings;
+    }
+}
@@ -1,37 +1,173 @@
 package ag.flatfile.xml;
 
-import java.util.ArrayList;
-import java.util.Map;
+import java.util.*;
 
-public class Entity {
-    private final String tag;
-    private final Map<String, String> attributes;
-    private String text;
-    private ArrayList<Entity> children;
+/**
+ * An xml element. Entities are views over an {@link XmlDocument}; they hold no data of their own and are
+ * cheap to create, so two Entity objects for the same element are equal but not necessarily identical.
+ */
+public final class Entity {
+    private final XmlDocument document;
+    private final int id;
 
-    public Entity(String tag, Map<String, String> attributes) {
-        this.tag = tag;
-        this.attributes = attributes;
+    Entity(XmlDocument document, int id) {
+        this.document = document;
+        this.id = id;
     }
 
-    public ArrayList<Entity> getChildren() {
-        return children;
+    public List<Entity> getChildren() {
+        int count = 0;
+        for (int child = document.firstChild(id); child >= 0; child = document.nextSibling(child)) {
+            count++;
+        }
+        int[] children = new int[count];
+        int i = 0;
+        for (int child = document.firstChild(id); child >= 0; child = document.nextSibling(child)) {
+            children[i++] = child;
+        }
+        return new AbstractList<>() {
+            @Override
+            public Entity get(int index) {
+                return new Entity(document, children[index]);
+            }
+
+            @Override
+            public int size() {
+                return children.length;
+            }
+        };
+    }
+
+    /**
+     * @return the parent element, or null for the root
+     */
+    public Entity getParent() {
+        int parent = document.parent(id);
+        return parent < 0 ? null : new Entity(document, parent);
     }
 
     public Map<String, String> getAttributes() {
-        return attributes;
+        return new AttributeMap();
     }
 
-    public String getTag() {
-        return tag;
+    /**
+     * @return the value of the attribute, or null if the element does not have it
+     */
+    public String getAttribute(String name) {
+        return document.attribute(id, name);
     }
 
-    public void setText(String text) {
-        this.text = text;
+    public String getTag() {
+        return document.tag(id);
     }
 
     public String getText() {
-        return text;
+        return document.text(id);
+    }
+
+    /**
+     * Finds the elements matching the query, evaluated from this element.
+     *
+     * @see XmlQuery
+     */
+    public List<Entity> select(String query) {
+        return XmlQuery.compile(query).select(this);
+    }
+
+    /**
+     * @return the first element matching the query in document order, or null when nothing matches
+     */
+    public Entity selectFirst(String query) {
+        return XmlQuery.compile(query).selectFirst(this);
+    }
+
+    public XmlDocument getDocument() {
+        return document;
+    }
+
+    /**
+     * @return the document order number of this element
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Entity)) {
+            return false;
+        }
+        Entity other = (Entity) o;
+        return document == other.document && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(document) + id;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + getTag() + getAttributes() + ">";
+    }
+
+    /**
+     * Read-only view of the attributes, backed by the document's attribute arrays.
+     */
+    private class AttributeMap extends AbstractMap<String, String> {
+        private final int start = document.attributeStart(id);
+        private final int end = document.attributeEnd(id);
+
+        @Override
+        public String get(Object key) {
+            return key instanceof String ? document.attribute(id, (String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return null != get(key);
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<>() {
+                        private int attr = start;
+
+                        @Override
+                        public boolean hasNext() {
+                            return attr < end;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (attr >= end) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(
+                                    document.attributeName(attr), document.attributeValue(attr));
+                            attr++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return end - start;
+                }
+            };
+        }
     }
 
 }
@@ -0,0 +1,82 @@
+package ag.flatfile.xml;
+
+/**
+ * Interns tag and attribute names straight from a char buffer. Looking up a name that was seen before returns
+ * the same String instance without allocating, so repeated names cost a hash and a compare.
+ * <p>
+ * Documents with an unbounded number of distinct names would grow the table forever, so once it holds
+ * {@link #MAX_NAMES} names new ones are returned without being remembered.
+ */
+class NameTable {
+
+    static final int MAX_NAMES = 1 << 14;
+
+    private String[] names = new String[256];
+    private int[] hashes = new int[256];
+    private int size = 0;
+
+    String intern(char[] buf, int off, int len) {
+        int hash = hash(buf, off, len);
+        int mask = names.length - 1;
+        int slot = hash & mask;
+        String name;
+        while (null != (name = names[slot])) {
+            if (hashes[slot] == hash && equals(name, buf, off, len)) {
+                return name;
+            }
+            slot = (slot + 1) & mask;
+        }
+        name = new String(buf, off, len);
+        if (size < MAX_NAMES) {
+            names[slot] = name;
+            hashes[slot] = hash;
+            if (++size * 2 > names.length) {
+                grow();
+            }
+        }
+        return name;
+    }
+
+    String intern(String name) {
+        return intern(name.toCharArray(), 0, name.length());
+    }
+
+    private void grow() {
+        String[] oldNames = names;
+        int[] oldHashes = hashes;
+        names = new String[oldNames.length * 2];
+        hashes = new int[oldNames.length * 2];
+        int mask = names.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (null != oldNames[i]) {
+                int slot = oldHashes[i] & mask;
+                while (null != names[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                names[slot] = oldNames[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static int hash(char[] buf, int off, int len) {
+        int hash = 0;
+        for (int i = off; i < off + len; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        // spread the bits, short names differ mostly in the low bits
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String name, char[] buf, int off, int len) {
+        if (name.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (name.charAt(i) != buf[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
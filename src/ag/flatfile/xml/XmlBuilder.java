@@ -1,9 +1,10 @@
 package ag.flatfile.xml;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 public class XmlBuilder {
 
@@ -63,6 +64,7 @@ public class XmlBuilder {
             parent.children.remove(this);
         }
         stepParent.children.add(this);
+        parent = stepParent;
         return this;
     }
 
@@ -74,12 +76,43 @@ public class XmlBuilder {
         return root;
     }
 
+    /**
+     * Builds this node and its children into a new {@link XmlDocument}, with this node as the root.
+     */
     public Entity build() {
-        Entity e = new Entity(tag, attributes);
-        List<Entity> childEntities = children.stream().map(XmlBuilder::build).collect(Collectors.toList());
-        e.getChildren().addAll(childEntities);
-        e.setText(text.toString());
-        return e;
+        XmlDocument.Builder builder = new XmlDocument.Builder(false);
+        build(builder);
+        return builder.build().getRoot();
+    }
+
+    /**
+     * Streams this node and its children to the writer, without building an {@link Entity} first.
+     */
+    public XmlBuilder write(XmlWriter writer) throws IOException {
+        writer.startElement(tag);
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            writer.attribute(attribute.getKey(), attribute.getValue());
+        }
+        if (text.length() > 0) {
+            writer.text(text);
+        }
+        for (XmlBuilder child : children) {
+            child.write(writer);
+        }
+        writer.endElement();
+        return this;
+    }
+
+    private void build(XmlDocument.Builder builder) {
+        builder.startElement(tag);
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            builder.attribute(attribute.getKey(), attribute.getValue());
+        }
+        builder.text(text);
+        for (XmlBuilder child : children) {
+            child.build(builder);
+        }
+        builder.endElement();
     }
 
 }
@@ -0,0 +1,333 @@
+package ag.flatfile.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, read-only storage for an xml tree. Instead of one object per element, the elements are numbered in
+ * document order and their tag, parent, attributes and text live in shared arrays indexed by that number.
+ * Tag and attribute names are stored once per document and referenced by id, element text and attribute
+ * values are kept in one shared char array. {@link Entity} objects are lightweight views that are only created
+ * when they are asked for.
+ * <p>
+ * Because elements are numbered in document order, the descendants of an element are exactly the elements
+ * numbered after it, up to its last descendant. This is all that is needed to walk children and siblings.
+ */
+public final class XmlDocument {
+
+    private final String[] names;
+    private final int size;
+    private final int[] tags;
+    private final int[] parents;
+    private final int[] lastDescendants;
+    // attributes of element n are attrStarts[n] until attrStarts[n + 1]
+    private final int[] attrStarts;
+    private final int[] attrNames;
+    private final int[] attrValueStarts;
+    private final int[] attrValueLengths;
+    private final char[] textChars;
+    private final int[] textStarts;
+    private final int[] textLengths;
+    private volatile XmlIndex index;
+
+    private XmlDocument(Builder builder) {
+        size = builder.size;
+        names = builder.names.toArray(new String[0]);
+        tags = Arrays.copyOf(builder.tags, size);
+        parents = Arrays.copyOf(builder.parents, size);
+        lastDescendants = Arrays.copyOf(builder.lastDescendants, size);
+        attrStarts = Arrays.copyOf(builder.attrStarts, size + 1);
+        attrStarts[size] = builder.attrCount;
+        attrNames = Arrays.copyOf(builder.attrNames, builder.attrCount);
+        attrValueStarts = Arrays.copyOf(builder.attrValueStarts, builder.attrCount);
+        attrValueLengths = Arrays.copyOf(builder.attrValueLengths, builder.attrCount);
+        textChars = Arrays.copyOf(builder.textChars, builder.textLength);
+        textStarts = Arrays.copyOf(builder.textStarts, size);
+        textLengths = Arrays.copyOf(builder.textLengths, size);
+    }
+
+    public Entity getRoot() {
+        return new Entity(this, 0);
+    }
+
+    /**
+     * @return the number of elements in the document
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the element with the given document order number
+     */
+    public Entity getEntity(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Element " + id + " out of bounds for " + size);
+        }
+        return new Entity(this, id);
+    }
+
+    String tag(int id) {
+        return names[tags[id]];
+    }
+
+    int tagId(int id) {
+        return tags[id];
+    }
+
+    /**
+     * Finds the elements matching the query anywhere in the document.
+     *
+     * @see XmlQuery
+     */
+    public List<Entity> select(String query) {
+        return XmlQuery.compile(query).select(this);
+    }
+
+    int nameCount() {
+        return names.length;
+    }
+
+    String name(int nameId) {
+        return names[nameId];
+    }
+
+    /**
+     * @return the lookup tables of the document, built on first use
+     */
+    XmlIndex index() {
+        XmlIndex result = index;
+        if (null == result) {
+            synchronized (this) {
+                result = index;
+                if (null == result) {
+                    index = result = new XmlIndex(this);
+                }
+            }
+        }
+        return result;
+    }
+
+    int parent(int id) {
+        return parents[id];
+    }
+
+    int lastDescendant(int id) {
+        return lastDescendants[id];
+    }
+
+    int firstChild(int id) {
+        return id < lastDescendants[id] ? id + 1 : -1;
+    }
+
+    int nextSibling(int id) {
+        int parent = parents[id];
+        int next = lastDescendants[id] + 1;
+        return parent >= 0 && next <= lastDescendants[parent] ? next : -1;
+    }
+
+    int attributeStart(int id) {
+        return attrStarts[id];
+    }
+
+    int attributeEnd(int id) {
+        return attrStarts[id + 1];
+    }
+
+    String attributeName(int attr) {
+        return names[attrNames[attr]];
+    }
+
+    int attributeNameId(int attr) {
+        return attrNames[attr];
+    }
+
+    String attributeValue(int attr) {
+        return new String(textChars, attrValueStarts[attr], attrValueLengths[attr]);
+    }
+
+    /**
+     * Compares an attribute value without creating a String for it.
+     */
+    boolean attributeValueEquals(int attr, String value) {
+        int length = attrValueLengths[attr];
+        if (value.length() != length) {
+            return false;
+        }
+        int start = attrValueStarts[attr];
+        for (int i = 0; i < length; i++) {
+            if (textChars[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String attribute(int id, String name) {
+        for (int attr = attrStarts[id]; attr < attrStarts[id + 1]; attr++) {
+            if (names[attrNames[attr]].equals(name)) {
+                return attributeValue(attr);
+            }
+        }
+        return null;
+    }
+
+    String text(int id) {
+        return new String(textChars, textStarts[id], textLengths[id]);
+    }
+
+    /**
+     * Collects a document from start/end element calls made in document order.
+     */
+    static class Builder {
+        private final boolean isTrimmingText;
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nameIds = new HashMap<>();
+
+        private int size = 0;
+        private int[] tags = new int[16];
+        private int[] parents = new int[16];
+        private int[] lastDescendants = new int[16];
+        private int[] attrStarts = new int[16];
+        private int[] textStarts = new int[16];
+        private int[] textLengths = new int[16];
+
+        private int attrCount = 0;
+        private int[] attrNames = new int[16];
+        private int[] attrValueStarts = new int[16];
+        private int[] attrValueLengths = new int[16];
+
+        private char[] textChars = new char[256];
+        private int textLength = 0;
+
+        // open elements and the text collected for each of them, by depth
+        private int[] open = new int[16];
+        private final List<StringBuilder> openTexts = new ArrayList<>();
+        private int depth = 0;
+
+        /**
+         * @param isTrimmingText true to drop leading and trailing whitespace from element text
+         */
+        Builder(boolean isTrimmingText) {
+            this.isTrimmingText = isTrimmingText;
+        }
+
+        int startElement(String tag) {
+            if (0 == depth && size > 0) {
+                throw new IllegalStateException("Document already has a root element");
+            }
+            if (size == tags.length) {
+                int capacity = size * 2;
+                tags = Arrays.copyOf(tags, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                lastDescendants = Arrays.copyOf(lastDescendants, capacity);
+                attrStarts = Arrays.copyOf(attrStarts, capacity);
+                textStarts = Arrays.copyOf(textStarts, capacity);
+                textLengths = Arrays.copyOf(textLengths, capacity);
+            }
+            int id = size++;
+            tags[id] = nameId(tag);
+            parents[id] = 0 == depth ? -1 : open[depth - 1];
+            attrStarts[id] = attrCount;
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+            }
+            open[depth] = id;
+            if (depth == openTexts.size()) {
+                openTexts.add(new StringBuilder());
+            }
+            openTexts.get(depth++).setLength(0);
+            return id;
+        }
+
+        /**
+         * Adds an attribute to the element that was started last, before any of its children are started.
+         */
+        void attribute(String name, CharSequence value) {
+            if (0 == depth || open[depth - 1] != size - 1) {
+                throw new IllegalStateException("Attributes must be added directly after their start element");
+            }
+            if (attrCount == attrNames.length) {
+                attrNames = Arrays.copyOf(attrNames, attrCount * 2);
+                attrValueStarts = Arrays.copyOf(attrValueStarts, attrCount * 2);
+                attrValueLengths = Arrays.copyOf(attrValueLengths, attrCount * 2);
+            }
+            attrNames[attrCount] = nameId(name);
+            attrValueStarts[attrCount] = appendChars(value, 0, value.length());
+            attrValueLengths[attrCount++] = value.length();
+        }
+
+        /**
+         * Appends text to the innermost open element.
+         */
+        void text(CharSequence text) {
+            if (0 == depth) {
+                throw new IllegalStateException("Text must be inside an element");
+            }
+            openTexts.get(depth - 1).append(text);
+        }
+
+        void endElement() {
+            if (0 == depth) {
+                throw new IllegalStateException("No open element to end");
+            }
+            int id = open[--depth];
+            lastDescendants[id] = size - 1;
+            StringBuilder text = openTexts.get(depth);
+            int start = 0;
+            int end = text.length();
+            if (isTrimmingText) {
+                while (start < end && Character.isWhitespace(text.charAt(start))) {
+                    start++;
+                }
+                while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                    end--;
+                }
+            }
+            textStarts[id] = appendChars(text, start, end);
+            textLengths[id] = end - start;
+        }
+
+        /**
+         * @return the position of the appended chars in the shared char array
+         */
+        private int appendChars(CharSequence chars, int start, int end) {
+            int length = end - start;
+            if (textLength + length > textChars.length) {
+                textChars = Arrays.copyOf(textChars, Math.max(textChars.length * 2, textLength + length));
+            }
+            int position = textLength;
+            for (int i = start; i < end; i++) {
+                textChars[textLength++] = chars.charAt(i);
+            }
+            return position;
+        }
+
+        int depth() {
+            return depth;
+        }
+
+        XmlDocument build() {
+            if (0 == size) {
+                throw new IllegalStateException("Document has no root element");
+            }
+            if (depth > 0) {
+                throw new IllegalStateException("Document has unclosed elements");
+            }
+            return new XmlDocument(this);
+        }
+
+        private int nameId(String name) {
+            Integer id = nameIds.get(name);
+            if (null == id) {
+                id = names.size();
+                names.add(name);
+                nameIds.put(name, id);
+            }
+            return id;
+        }
+    }
+}
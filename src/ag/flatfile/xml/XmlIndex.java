@@ -0,0 +1,101 @@
+package ag.flatfile.xml;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lookup tables over an {@link XmlDocument}. The tag table is built in one pass the first time a document is
+ * queried. A (tag, attribute) value table is built the first time that pair is used in a query. All element
+ * lists are in document order.
+ */
+class XmlIndex {
+
+    private static final int[] EMPTY = new int[0];
+    // name id used to index an attribute on any tag
+    static final int ANY_TAG = -1;
+
+    private final XmlDocument document;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final int[][] byTag;
+    private final Map<Long, Map<String, int[]>> byAttributeValue = new ConcurrentHashMap<>();
+
+    XmlIndex(XmlDocument document) {
+        this.document = document;
+        for (int i = 0; i < document.nameCount(); i++) {
+            nameIds.put(document.name(i), i);
+        }
+        int[] counts = new int[document.nameCount()];
+        for (int id = 0; id < document.size(); id++) {
+            counts[document.tagId(id)]++;
+        }
+        byTag = new int[counts.length][];
+        for (int i = 0; i < counts.length; i++) {
+            byTag[i] = 0 == counts[i] ? EMPTY : new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int id = 0; id < document.size(); id++) {
+            int tag = document.tagId(id);
+            byTag[tag][counts[tag]++] = id;
+        }
+    }
+
+    /**
+     * @return the name id, or -1 when the name does not occur in the document
+     */
+    int nameId(String name) {
+        Integer id = nameIds.get(name);
+        return null == id ? -1 : id;
+    }
+
+    int[] byTag(int tag) {
+        return tag < 0 ? EMPTY : byTag[tag];
+    }
+
+    /**
+     * @param tag name id of the tag, or {@link #ANY_TAG}
+     * @return the elements with the tag whose attribute has the value
+     */
+    int[] byAttribute(int tag, int attribute, String value) {
+        if (attribute < 0) {
+            return EMPTY;
+        }
+        long key = ((long) tag << 32) | attribute;
+        Map<String, int[]> values = byAttributeValue.computeIfAbsent(key, k -> indexValues(tag, attribute));
+        return values.getOrDefault(value, EMPTY);
+    }
+
+    private Map<String, int[]> indexValues(int tag, int attribute) {
+        Map<String, int[]> values = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        if (ANY_TAG == tag) {
+            for (int id = 0; id < document.size(); id++) {
+                addValue(id, attribute, values, counts);
+            }
+        } else {
+            for (int id : byTag(tag)) {
+                addValue(id, attribute, values, counts);
+            }
+        }
+        values.replaceAll((value, ids) -> Arrays.copyOf(ids, counts.get(value)));
+        return values;
+    }
+
+    private void addValue(int id, int attribute, Map<String, int[]> values, Map<String, Integer> counts) {
+        for (int attr = document.attributeStart(id); attr < document.attributeEnd(id); attr++) {
+            if (document.attributeNameId(attr) == attribute) {
+                String value = document.attributeValue(attr);
+                int count = counts.getOrDefault(value, 0);
+                int[] ids = values.get(value);
+                if (null == ids || count == ids.length) {
+                    ids = null == ids ? new int[2] : Arrays.copyOf(ids, count * 2);
+                    values.put(value, ids);
+                }
+                ids[count] = id;
+                counts.put(value, count + 1);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ag.flatfile.xml;
+
+public class XmlParseException extends RuntimeException {
+    public XmlParseException(String message) {
+        super(message);
+    }
+
+    public XmlParseException(String message, long offset) {
+        super(message + " (" + offset + ")");
+    }
+}
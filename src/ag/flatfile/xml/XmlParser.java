@@ -1,30 +1,24 @@
 package ag.flatfile.xml;
 
 import ag.flatfile.ParserUtil;
+import ag.flatfile.metrics.ParseMetrics;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.function.Consumer;
 
+/**
+ * Parses xml documents into a tree of {@link Entity}s. The tree is built from the events of an
+ * {@link XmlStreamReader}, so no token list of the document is ever held; use the stream reader directly for
+ * documents that should not be held in memory at all.
+ * <p>
+ * For large feeds, register handlers for the element paths of interest with {@link #on(String, Consumer)} and
+ * {@link #scan(Reader)} the document; only the matching subtrees are ever built.
+ */
 public class XmlParser {
 
-    private static final char XML_START_TAG = '<';
-    private static final char XML_END_TAG = '>';
-    private static final char XML_ATTR_VAL_SEP = '=';
-    private static final char XML_LITERAL_OP_SEP = '&';
-    private static final char XML_END_TAG_PAIR = '/';
-    private static final String XML_LITERAL_SEPARATORS = "<>=&/";
-    private static final char XML_STRING_SEP = '"';
-    private static final char XML_ESCAPE = '\\';
-
-    private static final Set<Character> xmlOperators = Set.of(
-            XML_START_TAG,
-            XML_END_TAG,
-            XML_ATTR_VAL_SEP,
-            XML_LITERAL_OP_SEP,
-            XML_END_TAG_PAIR
-    );
-
-    private static final Map<String, String> xmlLiteralOperators = Map.of(
+    static final Map<String, String> xmlLiteralOperators = Map.of(
             "amp", "&",
             "lt", "<",
             "gt", ">",
@@ -32,70 +26,256 @@ public class XmlParser {
             "quot", "\""
     );
 
-    static class XmlToken {
+    private static final String PATH_WILDCARD = "*";
+
+    private final PathNode pathRoot = new PathNode();
+
+    public Entity parse(String filename) throws IOException {
+        try (Reader reader = ParserUtil.openFile(filename)) {
+            return parse(reader);
+        }
+    }
 
-        public enum Type {
-            OPERATOR, STRING, LITERAL, WHITESPACE
+    /**
+     * Parses the xml read from the reader. The reader is not closed.
+     * <p>
+     * The text of an element is the concatenation of its text events, without leading and trailing whitespace.
+     * The tree is stored in a compact {@link XmlDocument}, reachable through {@link Entity#getDocument()}.
+     */
+    public Entity parse(Reader reader) throws IOException {
+        XmlStreamReader xml = new XmlStreamReader(reader);
+        ParseMetrics.Probe probe = ParseMetrics.start(ParseMetrics.Format.XML);
+        if (null == probe) {
+            return buildXml(xml);
         }
+        try {
+            Entity root = buildXml(xml);
+            finish(probe, xml);
+            return root;
+        } catch (IOException | RuntimeException e) {
+            probe.fail(xml.getOffset());
+            throw e;
+        }
+    }
+
+    /**
+     * Parses UTF-8 encoded xml read from the stream. The stream is not closed.
+     */
+    public Entity parse(InputStream in) throws IOException {
+        return parse(ParserUtil.toReader(in));
+    }
+
+    /**
+     * Parses UTF-8 encoded xml held in the byte array.
+     */
+    public Entity parse(byte[] bytes) throws IOException {
+        return parse(ParserUtil.toReader(bytes));
+    }
 
-        private final String token;
-        private final Type type;
+    /**
+     * Parses the UTF-8 encoded xml in the remaining bytes of the buffer. The buffer position is not changed.
+     */
+    public Entity parse(ByteBuffer buffer) throws IOException {
+        return parse(ParserUtil.toReader(buffer));
+    }
+
+    /**
+     * Parses the xml text itself, as opposed to {@link #parse(String)} which opens a file.
+     */
+    public Entity parseString(String xml) throws IOException {
+        return parse(ParserUtil.toStringReader(xml));
+    }
 
-        public XmlToken(String token, Type type) {
-            this.token = token;
-            this.type = type;
+    /**
+     * Registers a handler for the elements at an absolute path, such as {@code /catalog/item}. A path segment of
+     * {@code *} matches any tag. Handlers are used by the scan methods, not by parse; register them before
+     * scanning.
+     *
+     * @param handler receives each matching element as a complete subtree, once its end tag has been read
+     */
+    public XmlParser on(String path, Consumer<Entity> handler) {
+        if (null == handler) {
+            throw new NullPointerException("on() handler cannot be null");
         }
+        String[] segments = (path.startsWith("/") ? path.substring(1) : path).split("/", -1);
+        PathNode node = pathRoot;
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Invalid element path: " + path);
+            }
+            node = node.child(segment);
+        }
+        node.handlers.add(handler);
+        return this;
+    }
 
-        @Override
-        public String toString() {
-            if (Type.STRING == type) {
-                return '"' + token + '"';
-            } else if (Type.LITERAL == type) {
-                return "'" + token + "'";
-            } else if (Type.OPERATOR == type) {
-                return '<' + token + '>';
-            } else if (Type.WHITESPACE == type) {
-                return "[" + Character.getName(token.charAt(0)) + "]";
+    /**
+     * Streams the document, handing each element that matches a registered path to its handlers. Elements
+     * that cannot lead to a match are skipped without being decoded, and matched subtrees are dropped after their
+     * handlers return, so documents far larger than the heap can be processed.
+     * <p>
+     * Every path that matches an element fires, so {@code /r/*} and {@code /r/b/c} both see their elements of
+     * {@code <r><b><c/></b></r>}. An element inside a matched element is delivered as a part of the matched
+     * subtree, and its handlers run before those of the enclosing element, in the order the end tags are read.
+     */
+    public void scan(Reader reader) throws IOException {
+        XmlStreamReader xml = new XmlStreamReader(reader);
+        ParseMetrics.Probe probe = ParseMetrics.start(ParseMetrics.Format.XML);
+        if (null == probe) {
+            scanXml(xml);
+            return;
+        }
+        try {
+            scanXml(xml);
+            finish(probe, xml);
+        } catch (IOException | RuntimeException e) {
+            probe.fail(xml.getOffset());
+            throw e;
+        }
+    }
+
+    private void scanXml(XmlStreamReader xml) throws IOException {
+        // the trie nodes matching the open element at each depth, wildcard and exact ones alike
+        List<List<PathNode>> nodes = new ArrayList<>();
+        nodes.add(List.of(pathRoot));
+
+        XmlStreamReader.Event event;
+        while (XmlStreamReader.Event.END_DOCUMENT != (event = xml.next())) {
+            if (XmlStreamReader.Event.START_ELEMENT != event) {
+                continue;
+            }
+            int depth = xml.getDepth();
+            if (depth == nodes.size()) {
+                nodes.add(new ArrayList<>());
+            }
+            List<PathNode> matched = nodes.get(depth);
+            matched.clear();
+            PathNode.match(nodes.get(depth - 1), xml.getTag(), matched);
+            if (matched.isEmpty()) {
+                xml.skipElement();
+            } else if (PathNode.hasHandlers(matched)) {
+                deliver(buildElement(xml), matched);
             }
-            throw new IllegalStateException("JsonToken with unknown TokenType: " + type.name());
         }
     }
 
-    public Entity parse(String filename) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            LinkedList<XmlToken> tokens = parseTokens(reader);
-            System.out.println(tokens);
-            return buildXml(tokens);
+    /**
+     * Hands the built element to the handlers of the matched nodes, after matching its descendants against the
+     * paths that continue below them.
+     */
+    private static void deliver(Entity entity, List<PathNode> matched) {
+        List<PathNode> childMatched = new ArrayList<>();
+        for (Entity child : entity.getChildren()) {
+            childMatched.clear();
+            PathNode.match(matched, child.getTag(), childMatched);
+            if (!childMatched.isEmpty()) {
+                deliver(child, new ArrayList<>(childMatched));
+            }
+        }
+        for (PathNode node : matched) {
+            for (Consumer<Entity> handler : node.handlers) {
+                handler.accept(entity);
+            }
+        }
+    }
+
+    public void scan(String filename) throws IOException {
+        try (Reader reader = ParserUtil.openFile(filename)) {
+            scan(reader);
         }
     }
 
-    private LinkedList<XmlToken> parseTokens(Reader reader) throws IOException {
-        LinkedList<XmlToken> tokens = new LinkedList<>();
-        while (reader.ready()) {
-            int c = reader.read();
-            if (-1 == c) {
-                throw new IllegalStateException("Hit EOF while reader was ready");
+    public void scan(InputStream in) throws IOException {
+        scan(ParserUtil.toReader(in));
+    }
+
+    public void scan(byte[] bytes) throws IOException {
+        scan(ParserUtil.toReader(bytes));
+    }
+
+    public void scan(ByteBuffer buffer) throws IOException {
+        scan(ParserUtil.toReader(buffer));
+    }
+
+    /**
+     * A step of the registered element paths.
+     */
+    private static class PathNode {
+        private final Map<String, PathNode> children = new HashMap<>();
+        private final List<Consumer<Entity>> handlers = new ArrayList<>();
+
+        private PathNode child(String segment) {
+            return children.computeIfAbsent(segment, k -> new PathNode());
+        }
+
+        /**
+         * Adds the children of the nodes that match the tag, both the exact and the wildcard ones.
+         */
+        private static void match(List<PathNode> nodes, String tag, List<PathNode> matched) {
+            for (PathNode node : nodes) {
+                PathNode exact = node.children.get(tag);
+                if (null != exact) {
+                    matched.add(exact);
+                }
+                PathNode wildcard = node.children.get(PATH_WILDCARD);
+                if (null != wildcard) {
+                    matched.add(wildcard);
+                }
             }
-            if (xmlOperators.contains((char)c)) {
-                tokens.addLast(new XmlToken("" + (char)c, XmlToken.Type.OPERATOR));
-            } else if (XML_STRING_SEP == c) {
-                tokens.addLast(new XmlToken(ParserUtil.readString(reader, XML_STRING_SEP, XML_ESCAPE), XmlToken.Type.STRING));
-            } else if (Character.isWhitespace(c)) {
-                tokens.addLast(new XmlToken("" + (char)c, XmlToken.Type.WHITESPACE));
-            } else {
-                tokens.addLast(new XmlToken((char) c + ParserUtil.readLiteral(reader, XML_LITERAL_SEPARATORS), XmlToken.Type.LITERAL));
+        }
+
+        private static boolean hasHandlers(List<PathNode> nodes) {
+            for (PathNode node : nodes) {
+                if (!node.handlers.isEmpty()) {
+                    return true;
+                }
             }
+            return false;
         }
-        return tokens;
     }
 
-    private Entity buildXml(LinkedList<XmlToken> tokens) {
-        Entity root;
+    private static void finish(ParseMetrics.Probe probe, XmlStreamReader xml) {
+        probe.finish(xml.getOffset(), xml.getElementCount(), xml.getPeakDepth(), xml.getStringCount());
+    }
 
-        while (!tokens.isEmpty()) {
-    // TODO
+    private Entity buildXml(XmlStreamReader xml) throws IOException {
+        Entity root = null;
+        XmlStreamReader.Event event;
+        while (XmlStreamReader.Event.END_DOCUMENT != (event = xml.next())) {
+            if (XmlStreamReader.Event.START_ELEMENT == event) {
+                root = buildElement(xml);
+            }
+        }
+        if (null == root) {
+            throw new XmlParseException("Document has no root element");
         }
-        return null;
+        return root;
+    }
+
+    /**
+     * Builds the element the reader is positioned on, reading up to and including its END_ELEMENT.
+     */
+    private Entity buildElement(XmlStreamReader xml) throws IOException {
+        XmlDocument.Builder builder = new XmlDocument.Builder(true);
+        XmlStreamReader.Event event = xml.getEvent();
+
+        do {
+            switch (event) {
+                case START_ELEMENT:
+                    builder.startElement(xml.getTag());
+                    for (int i = 0; i < xml.getAttributeCount(); i++) {
+                        builder.attribute(xml.getAttributeName(i), xml.getAttributeValue(i));
+                    }
+                    break;
+                case TEXT:
+                    builder.text(xml.getTextCharacters());
+                    break;
+                case END_ELEMENT:
+                    builder.endElement();
+                    break;
+            }
+        } while (builder.depth() > 0 && XmlStreamReader.Event.END_DOCUMENT != (event = xml.next()));
+        return builder.build().getRoot();
     }
 
 }
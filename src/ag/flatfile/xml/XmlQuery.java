@@ -0,0 +1,281 @@
+package ag.flatfile.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A small XPath-like query over an {@link XmlDocument}. Supported expressions are steps separated by
+ * {@code /} (child) or {@code //} (descendant), where each step is a tag name or {@code *} followed by any
+ * number of {@code [@attribute]} or {@code [@attribute='value']} predicates. As in XPath, a query that starts
+ * with {@code /} or {@code //} is evaluated from the document root; start it with {@code ./} or {@code .//} to
+ * stay below the context element:
+ * <pre>
+ * /catalog/item              item children of the root catalog element
+ * //item[@sku='X']           item elements anywhere in the document with sku X
+ * .//item                    item elements anywhere below the context element
+ * section//item[@type]       item elements with a type below a section child of the context element
+ * </pre>
+ * Queries are answered from the document's index: the last step is looked up by tag, or by attribute value
+ * when it has one, and the earlier steps are checked by walking up from each candidate. A compiled query holds
+ * no document state and can be reused across documents and threads. Results are in document order.
+ */
+public final class XmlQuery {
+
+    private static final String ANY_TAG = "*";
+    // name id of a step tag that does not occur in the document
+    private static final int MISSING = -2;
+
+    private final String expression;
+    private final boolean isAbsolute;
+    private final Step[] steps;
+
+    private static class Step {
+        private final boolean isDescendant;
+        private final String tag;
+        private final String[] attributes;
+        // null entries only require the attribute to be present
+        private final String[] values;
+
+        private Step(boolean isDescendant, String tag, List<String> attributes, List<String> values) {
+            this.isDescendant = isDescendant;
+            this.tag = ANY_TAG.equals(tag) ? null : tag;
+            this.attributes = attributes.toArray(new String[0]);
+            this.values = values.toArray(new String[0]);
+        }
+    }
+
+    private XmlQuery(String expression, boolean isAbsolute, Step[] steps) {
+        this.expression = expression;
+        this.isAbsolute = isAbsolute;
+        this.steps = steps;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the expression is not a supported query
+     */
+    public static XmlQuery compile(String expression) {
+        if (null == expression || expression.isEmpty()) {
+            throw new IllegalArgumentException("Query cannot be empty");
+        }
+        boolean isAbsolute = expression.startsWith("/");
+        List<Step> steps = new ArrayList<>();
+        int i;
+        if (expression.startsWith("//") || expression.startsWith(".//")) {
+            // the first step is read as a descendant step
+            i = isAbsolute ? 0 : 1;
+        } else if (isAbsolute || expression.startsWith("./")) {
+            i = isAbsolute ? 1 : 2;
+        } else {
+            i = 0;
+        }
+        int length = expression.length();
+        while (i < length) {
+            boolean isDescendant = expression.startsWith("//", i);
+            if (isDescendant) {
+                i += 2;
+            } else if (!steps.isEmpty()) {
+                // steps after the first are always preceded by a separator
+                i++;
+            }
+            int start = i;
+            while (i < length && '/' != expression.charAt(i) && '[' != expression.charAt(i)) {
+                i++;
+            }
+            String tag = expression.substring(start, i).trim();
+            if (tag.isEmpty()) {
+                throw invalid(expression, "missing tag name at " + start);
+            }
+            List<String> attributes = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            while (i < length && '[' == expression.charAt(i)) {
+                int end = expression.indexOf(']', i);
+                if (end < 0) {
+                    throw invalid(expression, "unclosed predicate at " + i);
+                }
+                parsePredicate(expression, expression.substring(i + 1, end).trim(), attributes, values);
+                i = end + 1;
+            }
+            if (i < length && '/' != expression.charAt(i)) {
+                throw invalid(expression, "unexpected '" + expression.charAt(i) + "' at " + i);
+            }
+            steps.add(new Step(isDescendant, tag, attributes, values));
+        }
+        if (steps.isEmpty()) {
+            throw invalid(expression, "no steps");
+        }
+        return new XmlQuery(expression, isAbsolute, steps.toArray(new Step[0]));
+    }
+
+    private static void parsePredicate(String expression, String predicate, List<String> attributes,
+                                       List<String> values) {
+        if (!predicate.startsWith("@")) {
+            throw invalid(expression, "only [@attribute] predicates are supported");
+        }
+        int assign = predicate.indexOf('=');
+        if (assign < 0) {
+            attributes.add(predicate.substring(1).trim());
+            values.add(null);
+            return;
+        }
+        String value = predicate.substring(assign + 1).trim();
+        if (value.length() < 2 || value.charAt(0) != value.charAt(value.length() - 1)
+                || ('\'' != value.charAt(0) && '"' != value.charAt(0))) {
+            throw invalid(expression, "attribute values must be quoted");
+        }
+        attributes.add(predicate.substring(1, assign).trim());
+        values.add(value.substring(1, value.length() - 1));
+    }
+
+    private static IllegalArgumentException invalid(String expression, String reason) {
+        return new IllegalArgumentException("Invalid query '" + expression + "': " + reason);
+    }
+
+    /**
+     * Evaluates the query from the element. Absolute queries ({@code /a/b}, {@code //b}) are evaluated from the
+     * document.
+     */
+    public List<Entity> select(Entity context) {
+        return select(context.getDocument(), isAbsolute ? -1 : context.getId());
+    }
+
+    /**
+     * Evaluates the query from the document, so the first step of a relative query matches the root element.
+     */
+    public List<Entity> select(XmlDocument document) {
+        return select(document, -1);
+    }
+
+    /**
+     * @return the first match in document order, or null when nothing matches
+     */
+    public Entity selectFirst(Entity context) {
+        List<Entity> matches = select(context);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private List<Entity> select(XmlDocument document, int context) {
+        XmlIndex index = document.index();
+        // resolve the names of the query against this document once
+        int[] tags = new int[steps.length];
+        int[][] attributes = new int[steps.length][];
+        for (int s = 0; s < steps.length; s++) {
+            Step step = steps[s];
+            tags[s] = null == step.tag ? XmlIndex.ANY_TAG : index.nameId(step.tag);
+            if (null != step.tag && tags[s] < 0) {
+                tags[s] = MISSING;
+            }
+            attributes[s] = new int[step.attributes.length];
+            for (int a = 0; a < step.attributes.length; a++) {
+                attributes[s][a] = index.nameId(step.attributes[a]);
+            }
+        }
+        Evaluation evaluation = new Evaluation(document, context, tags, attributes);
+
+        int last = steps.length - 1;
+        int from = context + 1;
+        int to = context < 0 ? document.size() - 1 : document.lastDescendant(context);
+        List<Entity> matches = new ArrayList<>();
+        int[] candidates = candidates(index, steps[last], tags[last], attributes[last]);
+        if (null == candidates) {
+            for (int id = from; id <= to; id++) {
+                evaluation.collect(id, last, matches);
+            }
+        } else {
+            int start = Arrays.binarySearch(candidates, from);
+            for (int i = start < 0 ? -start - 1 : start; i < candidates.length && candidates[i] <= to; i++) {
+                evaluation.collect(candidates[i], last, matches);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return the index entries the last step can match, or null when every element has to be checked
+     */
+    private static int[] candidates(XmlIndex index, Step step, int tag, int[] attributes) {
+        if (MISSING == tag) {
+            return new int[0];
+        }
+        for (int a = 0; a < attributes.length; a++) {
+            if (null != step.values[a]) {
+                return index.byAttribute(tag, attributes[a], step.values[a]);
+            }
+        }
+        return null == step.tag ? null : index.byTag(tag);
+    }
+
+    /**
+     * Matching state of one query evaluation against one document.
+     */
+    private class Evaluation {
+        private final XmlDocument document;
+        private final int context;
+        private final int[] tags;
+        private final int[][] attributes;
+
+        private Evaluation(XmlDocument document, int context, int[] tags, int[][] attributes) {
+            this.document = document;
+            this.context = context;
+            this.tags = tags;
+            this.attributes = attributes;
+        }
+
+        private void collect(int id, int step, List<Entity> matches) {
+            if (matches(id, step) && matchesBefore(id, step)) {
+                matches.add(new Entity(document, id));
+            }
+        }
+
+        /**
+         * Checks the axis of the step that matched the element against the steps before it.
+         */
+        private boolean matchesBefore(int id, int step) {
+            boolean isDescendant = steps[step].isDescendant;
+            if (0 == step) {
+                return isDescendant ? isWithinContext(id) : document.parent(id) == context;
+            }
+            for (int ancestor = document.parent(id); ancestor >= 0 && ancestor != context;
+                 ancestor = document.parent(ancestor)) {
+                if (matches(ancestor, step - 1) && matchesBefore(ancestor, step - 1)) {
+                    return true;
+                }
+                if (!isDescendant) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private boolean isWithinContext(int id) {
+            return context < 0 || (id > context && id <= document.lastDescendant(context));
+        }
+
+        private boolean matches(int id, int step) {
+            if (XmlIndex.ANY_TAG != tags[step] && document.tagId(id) != tags[step]) {
+                return false;
+            }
+            String[] values = steps[step].values;
+            for (int a = 0; a < values.length; a++) {
+                if (!hasAttribute(id, attributes[step][a], values[a])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasAttribute(int id, int attribute, String value) {
+            for (int attr = document.attributeStart(id); attr < document.attributeEnd(id); attr++) {
+                if (document.attributeNameId(attr) == attribute) {
+                    return null == value || document.attributeValueEquals(attr, value);
+                }
+            }
+            return false;
+        }
+    }
+}
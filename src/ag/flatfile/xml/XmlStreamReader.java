@@ -0,0 +1,600 @@
+package ag.flatfile.xml;
+
+import ag.flatfile.CharClass;
+import ag.flatfile.CharScanner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A single pass pull parser for xml. Each call to {@link #next()} reads just far enough to report the next
+ * event, so memory use depends on the nesting depth and the size of a single tag or text run, never on the size
+ * of the document.
+ * <p>
+ * Comments, processing instructions and the doctype are skipped. Entity references in text and attribute values
+ * are decoded, CDATA sections are reported as text. A self-closing tag reports a START_ELEMENT followed by an
+ * END_ELEMENT.
+ * <p>
+ * Tag and attribute names are interned, so they can be compared by identity within one reader. The attributes
+ * of a start tag are only decoded when one of the attribute getters is called; elements that are not of interest
+ * can be passed over with {@link #skipElement()}, which scans to the end tag without decoding or allocating.
+ */
+public class XmlStreamReader implements Closeable {
+
+    private static final char XML_START_TAG = '<';
+    private static final char XML_END_TAG = '>';
+    private static final char XML_ATTR_VAL_SEP = '=';
+    private static final char XML_LITERAL_OP_SEP = '&';
+    private static final char XML_LITERAL_OP_END = ';';
+    private static final char XML_END_TAG_PAIR = '/';
+    private static final char XML_STRING_SEP = '"';
+    private static final char XML_ALT_STRING_SEP = '\'';
+    private static final int MAX_LITERAL_OP_LENGTH = 32;
+
+    private static final CharClass nameEnd = CharClass.of("<>/='\"").withWhitespace();
+    private static final CharClass textEnd = CharClass.of("<&");
+    private static final CharClass tagStart = CharClass.of("<");
+    private static final CharClass quotedValueEnd = CharClass.of("\"<&");
+    private static final CharClass aposValueEnd = CharClass.of("'<&");
+
+    public enum Event {
+        START_ELEMENT, END_ELEMENT, TEXT, END_DOCUMENT
+    }
+
+    private final CharScanner scanner;
+
+    private String[] openTags = new String[16];
+    private int depth = 0;
+    private boolean isPendingEnd = false;
+    private boolean isAttributesPending = false;
+    private boolean hasRoot = false;
+    private final NameTable names = new NameTable();
+    private final char[] terminatorWindow = new char[3];
+
+    private Event event;
+    private String tag;
+    private String[] attrNames = new String[8];
+    private String[] attrValues = new String[8];
+    private int attrCount = 0;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder scratch = new StringBuilder();
+    private final StringBuilder literal = new StringBuilder();
+    private String textValue;
+
+    // parse figures for ParseMetrics, kept here as they fall out of the parse for free
+    private int peakDepth = 0;
+    private long elementCount = 0;
+    private long stringCount = 0;
+
+    public XmlStreamReader(Reader reader) {
+        this.scanner = new CharScanner(reader);
+    }
+
+    /**
+     * Advances to the next event.
+     *
+     * @throws XmlParseException when the document is not well-formed
+     */
+    public Event next() throws IOException {
+        if (isAttributesPending) {
+            finishStartTag(false);
+        }
+        attrCount = 0;
+        textValue = null;
+        if (isPendingEnd) {
+            isPendingEnd = false;
+            tag = openTags[--depth];
+            return event = Event.END_ELEMENT;
+        }
+        while (true) {
+            int c = peek();
+            if (-1 == c) {
+                if (depth > 0) {
+                    throw new XmlParseException("Found end of file before closing <" + openTags[depth - 1] + ">", scanner.getOffset());
+                }
+                return event = Event.END_DOCUMENT;
+            }
+            if (XML_START_TAG != c) {
+                readText();
+                if (0 == depth) {
+                    // whitespace around the root element is not part of the document
+                    continue;
+                }
+                return event = Event.TEXT;
+            }
+            read();
+            switch (peek()) {
+                case '?':
+                    skipPast("?>");
+                    break;
+                case '!':
+                    read();
+                    if (startsWith("--")) {
+                        skipPast("-->");
+                    } else if (startsWith("[CDATA[")) {
+                        readCData();
+                        return event = Event.TEXT;
+                    } else {
+                        skipDeclaration();
+                    }
+                    break;
+                case XML_END_TAG_PAIR:
+                    read();
+                    readEndTag();
+                    return event = Event.END_ELEMENT;
+                default:
+                    readStartTag();
+                    return event = Event.START_ELEMENT;
+            }
+        }
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * @return the tag name of the current START_ELEMENT or END_ELEMENT
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the number of open elements, including the current one for a START_ELEMENT
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getAttributeCount() {
+        ensureAttributes();
+        return attrCount;
+    }
+
+    public String getAttributeName(int index) {
+        ensureAttributes();
+        checkAttributeIndex(index);
+        return attrNames[index];
+    }
+
+    public String getAttributeValue(int index) {
+        ensureAttributes();
+        checkAttributeIndex(index);
+        return attrValues[index];
+    }
+
+    /**
+     * @return the value of the named attribute of the current START_ELEMENT, or null if it is not present
+     */
+    public String getAttribute(String name) {
+        ensureAttributes();
+        for (int i = 0; i < attrCount; i++) {
+            if (attrNames[i].equals(name)) {
+                return attrValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the entity decoded characters of the current TEXT event
+     */
+    public String getText() {
+        if (null == textValue) {
+            textValue = text.toString();
+            stringCount++;
+        }
+        return textValue;
+    }
+
+    /**
+     * Gives access to the characters of the current TEXT event without creating a String. The contents are
+     * only valid until the next call to {@link #next()}.
+     */
+    public CharSequence getTextCharacters() {
+        return text;
+    }
+
+    /**
+     * @return true when the current TEXT event consists of whitespace only
+     */
+    public boolean isWhitespace() {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of characters consumed so far
+     */
+    public long getOffset() {
+        return scanner.getOffset();
+    }
+
+    int getPeakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * @return the number of start tags read, not counting the elements passed over by skipElement()
+     */
+    long getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * @return the number of Strings created for attribute values and text
+     */
+    long getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * Skips the rest of the current element, including all of its children, without decoding it. Must be called
+     * directly after a START_ELEMENT; afterwards the reader is positioned on that element's END_ELEMENT.
+     * <p>
+     * Only the nesting of the skipped content is tracked, its end tag names are not checked.
+     */
+    public void skipElement() throws IOException {
+        if (Event.START_ELEMENT != event) {
+            throw new IllegalStateException("skipElement() must be called on a START_ELEMENT, not " + event);
+        }
+        if (isAttributesPending) {
+            finishStartTag(false);
+        }
+        if (isPendingEnd) {
+            isPendingEnd = false;
+        } else {
+            int nested = 1;
+            while (nested > 0) {
+                skipToTag();
+                switch (peek()) {
+                    case XML_END_TAG_PAIR:
+                        skipTagBody();
+                        nested--;
+                        break;
+                    case '?':
+                        skipPast("?>");
+                        break;
+                    case '!':
+                        read();
+                        if (startsWith("--")) {
+                            skipPast("-->");
+                        } else if (startsWith("[CDATA[")) {
+                            skipPast("]]>");
+                        } else {
+                            skipDeclaration();
+                        }
+                        break;
+                    default:
+                        if (!skipTagBody()) {
+                            nested++;
+                        }
+                }
+            }
+        }
+        attrCount = 0;
+        textValue = null;
+        tag = openTags[--depth];
+        event = Event.END_ELEMENT;
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+
+    private void ensureAttributes() {
+        if (isAttributesPending) {
+            try {
+                finishStartTag(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Moves past the next '<' without looking at the chars before it.
+     */
+    private void skipToTag() throws IOException {
+        if (-1 == scanner.skipUntil(tagStart)) {
+            throw new XmlParseException("Found end of file before closing <" + openTags[depth - 1] + ">", scanner.getOffset());
+        }
+        read();
+    }
+
+    /**
+     * Moves past the closing '>' of a tag, skipping quoted attribute values.
+     *
+     * @return true if the tag was self-closing
+     */
+    private boolean skipTagBody() throws IOException {
+        int previous = -1;
+        int c;
+        while (XML_END_TAG != (c = read())) {
+            if (-1 == c) {
+                throw new XmlParseException("Found end of file inside a tag", scanner.getOffset());
+            }
+            if (XML_STRING_SEP == c || XML_ALT_STRING_SEP == c) {
+                int quote = c;
+                while (quote != (c = read())) {
+                    if (-1 == c) {
+                        throw new XmlParseException("Found end of file inside an attribute value", scanner.getOffset());
+                    }
+                }
+            }
+            previous = c;
+        }
+        return XML_END_TAG_PAIR == previous;
+    }
+
+    private void checkAttributeIndex(int index) {
+        if (index < 0 || index >= attrCount) {
+            throw new IndexOutOfBoundsException("Attribute index " + index + " out of bounds for " + attrCount);
+        }
+    }
+
+    private void readText() throws IOException {
+        text.setLength(0);
+        while (XML_LITERAL_OP_SEP == scanner.readUntil(textEnd, text)) {
+            read();
+            readLiteralOperator(text);
+        }
+        if (depth == 0 && !isWhitespace()) {
+            throw new XmlParseException("Found text outside of the root element", scanner.getOffset());
+        }
+    }
+
+    private void readCData() throws IOException {
+        text.setLength(0);
+        int matched = 0;
+        while (matched < 3) {
+            int c = read();
+            if (-1 == c) {
+                throw new XmlParseException("Found end of file inside CDATA section", scanner.getOffset());
+            }
+            if (']' == c) {
+                if (2 == matched) {
+                    text.append(']');
+                } else {
+                    matched++;
+                }
+            } else if (XML_END_TAG == c && 2 == matched) {
+                matched = 3;
+            } else {
+                text.append("]]", 0, matched).append((char) c);
+                matched = 0;
+            }
+        }
+    }
+
+    private void readStartTag() throws IOException {
+        if (0 == depth && hasRoot) {
+            throw new XmlParseException("Found a second root element", scanner.getOffset());
+        }
+        tag = readName();
+        if (depth == openTags.length) {
+            openTags = Arrays.copyOf(openTags, depth * 2);
+        }
+        openTags[depth++] = tag;
+        peakDepth = Math.max(peakDepth, depth);
+        elementCount++;
+        hasRoot = true;
+        isAttributesPending = true;
+    }
+
+    /**
+     * Reads the attributes and the end of the current start tag.
+     *
+     * @param isDecoding false to pass over the attributes without decoding them
+     */
+    private void finishStartTag(boolean isDecoding) throws IOException {
+        isAttributesPending = false;
+        while (true) {
+            skipWhitespace();
+            int c = read();
+            if (XML_END_TAG == c) {
+                break;
+            } else if (XML_END_TAG_PAIR == c) {
+                expect(XML_END_TAG);
+                isPendingEnd = true;
+                break;
+            } else if (-1 == c) {
+                throw new XmlParseException("Found end of file inside <" + tag + ">", scanner.getOffset());
+            }
+            unread();
+            if (isDecoding) {
+                readAttribute();
+            } else {
+                skipAttribute();
+            }
+        }
+    }
+
+    private void skipAttribute() throws IOException {
+        scanner.skipUntil(nameEnd);
+        skipWhitespace();
+        expect(XML_ATTR_VAL_SEP);
+        skipWhitespace();
+        int quote = read();
+        if (XML_STRING_SEP != quote && XML_ALT_STRING_SEP != quote) {
+            throw new XmlParseException("Expected quoted attribute value in <" + tag + ">", scanner.getOffset());
+        }
+        CharClass valueEnd = XML_STRING_SEP == quote ? quotedValueEnd : aposValueEnd;
+        int c;
+        while (quote != (c = scanner.skipUntil(valueEnd))) {
+            if (-1 == c || XML_START_TAG == c) {
+                throw new XmlParseException("Unterminated attribute value in <" + tag + ">", scanner.getOffset());
+            }
+            // entity references are not decoded when skipping
+            read();
+        }
+        read();
+    }
+
+    private void readAttribute() throws IOException {
+        String name = readName();
+        skipWhitespace();
+        expect(XML_ATTR_VAL_SEP);
+        skipWhitespace();
+        int quote = read();
+        if (XML_STRING_SEP != quote && XML_ALT_STRING_SEP != quote) {
+            throw new XmlParseException("Expected quoted value for attribute " + name, scanner.getOffset());
+        }
+        scratch.setLength(0);
+        CharClass valueEnd = XML_STRING_SEP == quote ? quotedValueEnd : aposValueEnd;
+        int c;
+        while (quote != (c = scanner.readUntil(valueEnd, scratch))) {
+            if (-1 == c || XML_START_TAG == c) {
+                throw new XmlParseException("Unterminated value for attribute " + name, scanner.getOffset());
+            }
+            read();
+            readLiteralOperator(scratch);
+        }
+        read();
+        if (attrCount == attrNames.length) {
+            attrNames = Arrays.copyOf(attrNames, attrCount * 2);
+            attrValues = Arrays.copyOf(attrValues, attrCount * 2);
+        }
+        attrNames[attrCount] = name;
+        attrValues[attrCount++] = scratch.toString();
+        stringCount++;
+    }
+
+    private void readEndTag() throws IOException {
+        tag = readName();
+        skipWhitespace();
+        expect(XML_END_TAG);
+        if (0 == depth || !openTags[depth - 1].equals(tag)) {
+            throw new XmlParseException("Found </" + tag + "> without matching start tag", scanner.getOffset());
+        }
+        depth--;
+    }
+
+    /**
+     * Decodes an entity reference, the leading '&' has already been read.
+     */
+    private void readLiteralOperator(StringBuilder out) throws IOException {
+        literal.setLength(0);
+        int c;
+        while (XML_LITERAL_OP_END != (c = read())) {
+            if (-1 == c || Character.isWhitespace(c) || literal.length() > MAX_LITERAL_OP_LENGTH) {
+                throw new XmlParseException("Unterminated entity reference", scanner.getOffset());
+            }
+            literal.append((char) c);
+        }
+        if (literal.length() > 1 && '#' == literal.charAt(0)) {
+            boolean isHex = 'x' == literal.charAt(1);
+            try {
+                out.appendCodePoint(Integer.parseInt(literal, isHex ? 2 : 1, literal.length(), isHex ? 16 : 10));
+            } catch (IllegalArgumentException e) {
+                throw new XmlParseException("Invalid character reference &" + literal + ";", scanner.getOffset());
+            }
+            return;
+        }
+        String value = XmlParser.xmlLiteralOperators.get(literal.toString());
+        if (null == value) {
+            throw new XmlParseException("Unknown entity reference &" + literal + ";", scanner.getOffset());
+        }
+        out.append(value);
+    }
+
+    /**
+     * Reads a name out of the scanner window and interns it, without building an intermediate String.
+     */
+    private String readName() throws IOException {
+        String name = scanner.readToken(nameEnd, names::intern);
+        if (null == name) {
+            throw new XmlParseException("Name longer than " + CharScanner.DEFAULT_WINDOW_SIZE + " chars", scanner.getOffset());
+        }
+        if (name.isEmpty()) {
+            int c = peek();
+            throw new XmlParseException("Expected a name but found '" + (-1 == c ? "EOF" : (char) c) + "'", scanner.getOffset());
+        }
+        return name;
+    }
+
+    /**
+     * Skips a <!DOCTYPE ...> style declaration, including an internal subset in brackets.
+     */
+    private void skipDeclaration() throws IOException {
+        int nesting = 0;
+        int c;
+        while (-1 != (c = read())) {
+            if ('[' == c) {
+                nesting++;
+            } else if (']' == c) {
+                nesting--;
+            } else if (XML_END_TAG == c && nesting <= 0) {
+                return;
+            }
+        }
+        throw new XmlParseException("Found end of file inside declaration", scanner.getOffset());
+    }
+
+    private void skipPast(String terminator) throws IOException {
+        // the terminators are at most 3 chars long, so compare the trailing chars seen so far directly
+        int length = terminator.length();
+        char[] last = terminatorWindow;
+        int count = 0;
+        while (count < length || !endsWith(last, terminator)) {
+            int c = read();
+            if (-1 == c) {
+                throw new XmlParseException("Found end of file before " + terminator, scanner.getOffset());
+            }
+            System.arraycopy(last, 1, last, 0, length - 1);
+            last[length - 1] = (char) c;
+            count++;
+        }
+    }
+
+    private static boolean endsWith(char[] last, String terminator) {
+        for (int i = 0; i < terminator.length(); i++) {
+            if (last[i] != terminator.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Consumes the prefix if the input starts with it. Only used for short prefixes after "<!".
+     */
+    private boolean startsWith(String prefix) throws IOException {
+        return scanner.startsWith(prefix);
+    }
+
+    private void skipWhitespace() throws IOException {
+        scanner.skip(CharClass.WHITESPACE);
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = read();
+        if (expected != c) {
+            throw new XmlParseException("Expected '" + expected + "' but found '" + (-1 == c ? "EOF" : (char) c) + "'", scanner.getOffset());
+        }
+    }
+
+    private int peek() throws IOException {
+        return scanner.peek();
+    }
+
+    private int read() throws IOException {
+        return scanner.read();
+    }
+
+    /**
+     * Steps back over the last char returned by read(). Only valid directly after a successful read().
+     */
+    private void unread() {
+        scanner.unread();
+    }
+}
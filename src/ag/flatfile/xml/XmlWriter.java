@@ -0,0 +1,230 @@
+package ag.flatfile.xml;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes xml straight to a Writer as it is produced, escaping text and attribute values on the way. Only the
+ * names of the currently open elements are kept, so memory use does not grow with the document.
+ * <pre>
+ * writer.startElement("item").attribute("sku", sku).text(name).endElement();
+ * </pre>
+ * Elements without content are written self-closing.
+ */
+public class XmlWriter implements Closeable, Flushable {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    private final Writer writer;
+    private String[] openTags = new String[16];
+    private int depth = 0;
+    private boolean isStartTagOpen = false;
+    private boolean hasRoot = false;
+
+    public XmlWriter(Writer writer) {
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+    }
+
+    /**
+     * Writes UTF-8 encoded xml to the stream.
+     */
+    public XmlWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the xml declaration. Must come before the root element.
+     */
+    public XmlWriter declaration() throws IOException {
+        if (hasRoot) {
+            throw new IllegalStateException("The declaration must be written before the root element");
+        }
+        writer.write(XML_DECLARATION);
+        writer.write('\n');
+        return this;
+    }
+
+    public XmlWriter startElement(String tag) throws IOException {
+        if (null == tag || tag.isEmpty()) {
+            throw new IllegalArgumentException("startElement() tag cannot be empty");
+        }
+        if (0 == depth && hasRoot) {
+            throw new IllegalStateException("Document already has a root element");
+        }
+        closeStartTag();
+        writer.write('<');
+        writer.write(tag);
+        if (depth == openTags.length) {
+            openTags = Arrays.copyOf(openTags, depth * 2);
+        }
+        openTags[depth++] = tag;
+        isStartTagOpen = true;
+        hasRoot = true;
+        return this;
+    }
+
+    /**
+     * Adds an attribute to the element that was just started. Must come before any of the element's content.
+     */
+    public XmlWriter attribute(String name, String value) throws IOException {
+        if (!isStartTagOpen) {
+            throw new IllegalStateException("Attributes must be written directly after startElement()");
+        }
+        writer.write(' ');
+        writer.write(name);
+        writer.write("=\"");
+        escape(value, true);
+        writer.write('"');
+        return this;
+    }
+
+    public XmlWriter text(CharSequence text) throws IOException {
+        if (0 == depth) {
+            throw new IllegalStateException("Text must be written inside an element");
+        }
+        closeStartTag();
+        escape(text, false);
+        return this;
+    }
+
+    public XmlWriter endElement() throws IOException {
+        if (0 == depth) {
+            throw new IllegalStateException("No open element to end");
+        }
+        String tag = openTags[--depth];
+        openTags[depth] = null;
+        if (isStartTagOpen) {
+            writer.write("/>");
+            isStartTagOpen = false;
+        } else {
+            writer.write("</");
+            writer.write(tag);
+            writer.write('>');
+        }
+        return this;
+    }
+
+    /**
+     * Writes a complete element that only contains text.
+     */
+    public XmlWriter element(String tag, CharSequence text) throws IOException {
+        return startElement(tag).text(text).endElement();
+    }
+
+    /**
+     * Writes the element and all of its children.
+     */
+    public XmlWriter write(Entity entity) throws IOException {
+        startElement(entity.getTag());
+        XmlDocument document = entity.getDocument();
+        int id = entity.getId();
+        for (int attr = document.attributeStart(id); attr < document.attributeEnd(id); attr++) {
+            attribute(document.attributeName(attr), document.attributeValue(attr));
+        }
+        String text = entity.getText();
+        if (!text.isEmpty()) {
+            text(text);
+        }
+        for (Entity child : entity.getChildren()) {
+            write(child);
+        }
+        return endElement();
+    }
+
+    /**
+     * @return the number of elements that are started but not yet ended
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Ends all open elements.
+     */
+    public XmlWriter endDocument() throws IOException {
+        while (depth > 0) {
+            endElement();
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Ends all open elements and closes the underlying writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            endDocument();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void closeStartTag() throws IOException {
+        if (isStartTagOpen) {
+            writer.write('>');
+            isStartTagOpen = false;
+        }
+    }
+
+    /**
+     * Writes the text, replacing markup characters with entity references. Runs of plain characters are
+     * written in one call.
+     */
+    private void escape(CharSequence text, boolean isAttribute) throws IOException {
+        if (null == text) {
+            return;
+        }
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String replacement = replacement(text.charAt(i), isAttribute);
+            if (null != replacement) {
+                if (i > start) {
+                    writeRun(text, start, i);
+                }
+                writer.write(replacement);
+                start = i + 1;
+            }
+        }
+        if (length > start) {
+            writeRun(text, start, length);
+        }
+    }
+
+    private void writeRun(CharSequence text, int start, int end) throws IOException {
+        if (text instanceof String) {
+            // Writer.append would copy the run into a new String first
+            writer.write((String) text, start, end - start);
+        } else {
+            writer.append(text, start, end);
+        }
+    }
+
+    private static String replacement(char c, boolean isAttribute) {
+        switch (c) {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                return isAttribute ? "&quot;" : null;
+            case '\n':
+                return isAttribute ? "&#10;" : null;
+            case '\r':
+                return "&#13;";
+            case '\t':
+                return isAttribute ? "&#9;" : null;
+            default:
+                return null;
+        }
+    }
+}
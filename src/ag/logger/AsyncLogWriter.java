@@ -0,0 +1,162 @@
+package ag.logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer of an asynchronous {@link Logger}. Callers only put entries into a {@link LogRing}; this
+ * thread formats and writes them in batches and flushes once enough entries were written or enough time passed,
+ * so logging never waits for the output.
+ */
+final class AsyncLogWriter implements Runnable {
+
+    // upper bound for how long the writer sleeps while the ring is empty
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // how long a blocked producer waits before trying the ring again
+    private static final long BLOCKED_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Logger logger;
+    private final Logger.AsyncConfig config;
+    private final LogRing ring;
+    private final long flushIntervalNanos;
+    private final Thread thread;
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDropped = 0;
+    // entries the logger failed to write, only touched by the writer thread
+    private long failed = 0;
+    private RuntimeException lastFailure;
+
+    private volatile boolean isRunning = true;
+    private volatile boolean isSleeping = false;
+
+    AsyncLogWriter(Logger logger, Logger.AsyncConfig config) {
+        this.logger = logger;
+        this.config = config;
+        this.ring = new LogRing(config.capacity);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.flushIntervalMillis);
+        this.thread = new Thread(this, "ag-logger-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the entry, applying the overflow policy when the ring is full.
+     */
+    void offer(Logger.Level level, long time, String message) {
+        while (!ring.offer(level, time, message)) {
+            boolean isDropping = Logger.OverflowPolicy.DROP == config.overflowPolicy
+                    || (Logger.OverflowPolicy.DROP_BELOW_LEVEL == config.overflowPolicy
+                        && level.ordinal() < config.dropBelow.ordinal());
+            if (isDropping || !isRunning) {
+                dropped.incrementAndGet();
+                return;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(BLOCKED_RETRY_NANOS);
+        }
+        if (isSleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops the writer once everything queued so far is written and flushed.
+     */
+    void shutdown() {
+        isRunning = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes and flushes until shut down. If the writer thread dies anyway, producers fall back to dropping
+     * entries instead of waiting for a ring nobody drains.
+     */
+    @Override
+    public void run() {
+        try {
+            writeUntilStopped();
+        } finally {
+            isRunning = false;
+        }
+    }
+
+    private void writeUntilStopped() {
+        LogRing.Handler handler = this::write;
+        int pending = 0;
+        long lastFlush = System.nanoTime();
+        while (true) {
+            // read before draining, so entries queued before a shutdown are always written
+            boolean isStopping = !isRunning;
+            int count = ring.drain(handler, config.flushEntries);
+            pending += count;
+            long sinceFlush = System.nanoTime() - lastFlush;
+            boolean isDrained = 0 == count;
+            if (pending > 0 && (pending >= config.flushEntries || sinceFlush >= flushIntervalNanos
+                    || (isDrained && isStopping))) {
+                flush();
+                pending = 0;
+                lastFlush = System.nanoTime();
+                sinceFlush = 0;
+            }
+            if (isDrained) {
+                if (isStopping) {
+                    flush();
+                    return;
+                }
+                // wake up in time for the next flush, or when a producer unparks the writer
+                long idleNanos = pending > 0
+                        ? Math.min(flushIntervalNanos - sinceFlush, MAX_IDLE_NANOS)
+                        : MAX_IDLE_NANOS;
+                isSleeping = true;
+                if (ring.isEmpty() && isRunning) {
+                    LockSupport.parkNanos(this, idleNanos);
+                }
+                isSleeping = false;
+            }
+        }
+    }
+
+    /**
+     * Writes one entry; a failing entry is counted and reported with the next flush, the rest are still written.
+     */
+    private void write(Logger.Level level, long time, String message) {
+        try {
+            logger.write(level, time, message);
+        } catch (RuntimeException e) {
+            failed++;
+            lastFailure = e;
+        }
+    }
+
+    private void flush() {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            write(Logger.Level.WARNING, System.currentTimeMillis(),
+                    "Dropped " + (total - reportedDropped) + " log messages while the log buffer was full");
+            reportedDropped = total;
+        }
+        if (failed > 0) {
+            System.err.println("Failed to write " + failed + " log messages: " + lastFailure);
+            failed = 0;
+            lastFailure = null;
+        }
+        try {
+            logger.flushWriter();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to flush log: " + e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ag.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free queue of log entries for many producer threads and one consumer. Every slot carries a
+ * sequence number that says whether it is free for the producer of a given position or holds an entry for the
+ * consumer, so producers only contend on a single compare-and-set of the tail, and nothing is allocated per entry.
+ */
+final class LogRing {
+
+    /**
+     * Receives the entries taken out of the ring.
+     */
+    interface Handler {
+        void accept(Logger.Level level, long time, String message);
+    }
+
+    private static final class Entry {
+        private Logger.Level level;
+        private long time;
+        private String message;
+    }
+
+    private final Entry[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // only touched by the consumer thread
+    private long head = 0;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    LogRing(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("LogRing capacity must be at least 2, not " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        entries = new Entry[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return false when the ring is full
+     */
+    boolean offer(Logger.Level level, long time, String message) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long available = sequences.get(index) - position;
+            if (0 == available) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Entry entry = entries[index];
+                    entry.level = level;
+                    entry.time = time;
+                    entry.message = message;
+                    // publishes the entry to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                // the slot still holds the entry from one lap ago
+                return false;
+            } else {
+                // another producer claimed this position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Hands up to max entries to the handler, oldest first. Must only be called by the consumer thread.
+     *
+     * @return the number of entries taken
+     */
+    int drain(Handler handler, int max) {
+        int count = 0;
+        while (count < max) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Entry entry = entries[index];
+            Logger.Level level = entry.level;
+            long time = entry.time;
+            String message = entry.message;
+            entry.message = null;
+            // frees the slot for the producer one lap ahead
+            sequences.set(index, head + entries.length);
+            head++;
+            count++;
+            handler.accept(level, time, message);
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -4,68 +4,344 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.HashMap;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+/**
+ * Writes log messages of a minimum {@link Level} to an output.
+ * <p>
+ * By default a message is formatted and written by the calling thread. After {@link #enableAsync()} the caller
+ * only queues the message in a bounded ring buffer and a background thread formats, writes and flushes messages in
+ * batches; see {@link AsyncConfig} for the buffer size, the flush thresholds and what happens when the buffer is
+ * full.
+ * <p>
+ * Loggers are safe to use from any number of threads. Check {@link #isEnabled(Level)}, or use the
+ * {@code Supplier} and {@code "{}"} pattern overloads, to avoid building messages that are not logged.
+ */
 public class Logger {
 
-    private static final Map<String, Logger> loggers = new HashMap<>();
-    private static final SimpleDateFormat timeFormat = new SimpleDateFormat("(yMMdd H:m:s:S Z)");
+    private static final Map<String, Logger> loggers = new ConcurrentHashMap<>();
+    // same layout as the former SimpleDateFormat pattern "(yMMdd H:m:s:S Z)"
+    private static final DateTimeFormatter timeFormat = new DateTimeFormatterBuilder()
+            .appendLiteral('(')
+            .appendValue(ChronoField.YEAR_OF_ERA)
+            .appendValue(ChronoField.MONTH_OF_YEAR, 2)
+            .appendValue(ChronoField.DAY_OF_MONTH, 2)
+            .appendLiteral(' ')
+            .appendValue(ChronoField.HOUR_OF_DAY)
+            .appendLiteral(':')
+            .appendValue(ChronoField.MINUTE_OF_HOUR)
+            .appendLiteral(':')
+            .appendValue(ChronoField.SECOND_OF_MINUTE)
+            .appendLiteral(':')
+            .appendValue(ChronoField.MILLI_OF_SECOND)
+            .appendLiteral(' ')
+            .appendOffset("+HHMM", "+0000")
+            .appendLiteral(')')
+            .toFormatter()
+            .withZone(ZoneId.systemDefault());
+    private static final String PARAMETER = "{}";
+    // builds formatted messages without a new builder per call
+    private static final ThreadLocal<StringBuilder> messageBuilder = ThreadLocal.withInitial(StringBuilder::new);
+    private static final int MAX_RETAINED_BUILDER = 1 << 12;
+    // the formatted timestamp of the last millisecond anything was logged in
+    private static volatile Timestamp lastTimestamp = new Timestamp(Long.MIN_VALUE, "");
     public static final String DEFAULT_LOGGER_NAME = "DEFAULT_LOGGER";
 
-    private BufferedWriter writer;
-    private Level level = Level.INFO;
+    private volatile Writer writer;
+    private volatile Level level = Level.INFO;
+    // keeps the chars of one message together when several threads write
+    private final Object writeLock = new Object();
+    private volatile AsyncLogWriter asyncWriter;
+    private Thread shutdownHook;
 
     public enum Level {
         DEBUG, INFO, WARNING, ERROR, FATAL, NONE;
     }
 
+    private static class Timestamp {
+        private final long time;
+        private final String text;
+
+        private Timestamp(long time, String text) {
+            this.time = time;
+            this.text = text;
+        }
+    }
+
+    /**
+     * What an asynchronous logger does with a message when its buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** wait until the background writer has made room */
+        BLOCK,
+        /** drop the message */
+        DROP,
+        /** drop messages below {@link AsyncConfig#dropBelow(Level)}, wait for the others */
+        DROP_BELOW_LEVEL
+    }
+
+    /**
+     * Settings of an asynchronous logger.
+     */
+    public static class AsyncConfig {
+        int capacity = 8192;
+        OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        Level dropBelow = Level.WARNING;
+        int flushEntries = 1024;
+        long flushIntervalMillis = 200;
+
+        /**
+         * @param capacity the number of messages the buffer holds, rounded up to a power of two
+         */
+        public AsyncConfig capacity(int capacity) {
+            if (capacity < 2) {
+                throw new IllegalArgumentException("Async log capacity must be at least 2, not " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        public AsyncConfig overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Uses {@link OverflowPolicy#DROP_BELOW_LEVEL}: when the buffer is full, messages below the level are
+         * dropped and the others wait.
+         */
+        public AsyncConfig dropBelow(Level level) {
+            this.overflowPolicy = OverflowPolicy.DROP_BELOW_LEVEL;
+            this.dropBelow = level;
+            return this;
+        }
+
+        /**
+         * The output is flushed once either threshold is reached.
+         *
+         * @param entries number of messages written since the last flush
+         * @param intervalMillis time since the last flush
+         */
+        public AsyncConfig flushAfter(int entries, long intervalMillis) {
+            if (entries < 1 || intervalMillis < 0) {
+                throw new IllegalArgumentException("Invalid flush thresholds: " + entries + " entries, "
+                        + intervalMillis + " ms");
+            }
+            this.flushEntries = entries;
+            this.flushIntervalMillis = intervalMillis;
+            return this;
+        }
+    }
+
     private Logger(OutputStream out) {
-        writer = new BufferedWriter(new OutputStreamWriter(out));
+        this(new BufferedWriter(new OutputStreamWriter(out)));
+    }
+
+    private Logger(Writer writer) {
+        this.writer = writer;
     }
 
-    public void setWriter(BufferedWriter writer) {
+    /**
+     * Replaces the output. Any Writer can be used, such as a BufferedWriter or a {@link MappedFileAppender};
+     * the logger flushes it after each message, or after each batch in async mode.
+     */
+    public void setWriter(Writer writer) {
         this.writer = writer;
     }
 
     public static Logger getDefaultLogger() {
-        Logger logger = getLogger(DEFAULT_LOGGER_NAME);
-        if (null == logger) {
-            logger = createAndAddLogger(DEFAULT_LOGGER_NAME, System.out);
-        }
-        return logger;
+        return loggers.computeIfAbsent(DEFAULT_LOGGER_NAME, k -> new Logger(System.out));
     }
 
+    /**
+     * @return the logger registered under the name, which is created to write to the stream if there is none yet
+     */
     public static Logger addLogger(String name, OutputStream out) {
-        loggers.computeIfAbsent(name, k -> createAndAddLogger(name, out));
-        return loggers.get(name);
+        return loggers.computeIfAbsent(name, k -> new Logger(out));
     }
 
-    private static Logger createAndAddLogger(String name, OutputStream out) {
-        Logger logger = new Logger(out);
-        loggers.put(name, logger);
-        return logger;
+    /**
+     * @return the logger registered under the name, which is created to write to the writer if there is none yet
+     */
+    public static Logger addLogger(String name, Writer writer) {
+        return loggers.computeIfAbsent(name, k -> new Logger(writer));
     }
 
-
     public static Logger getLogger(String name) {
         return loggers.get(name);
     }
 
-    private String getTimestamp() {
-        Calendar timestamp = Calendar.getInstance();
-        return timeFormat.format(timestamp.getTime());
+    /**
+     * @return the timestamp text of the time, formatted at most once per millisecond across all threads
+     */
+    private static String getTimestamp(long time) {
+        Timestamp timestamp = lastTimestamp;
+        if (timestamp.time != time) {
+            timestamp = new Timestamp(time, timeFormat.format(Instant.ofEpochMilli(time)));
+            lastTimestamp = timestamp;
+        }
+        return timestamp.text;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= this.level.ordinal() && null != writer;
     }
 
     public void log(Level level, String message) {
-        if (null == writer || level.ordinal() < this.level.ordinal()) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        AsyncLogWriter async = asyncWriter;
+        if (null != async) {
+            async.offer(level, System.currentTimeMillis(), message);
+            return;
+        }
+        write(level, System.currentTimeMillis(), message);
+        flushWriter();
+    }
+
+    /**
+     * Logs the message of the supplier, which is only called when the level is enabled.
+     */
+    public void log(Level level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            log(level, message.get());
+        }
+    }
+
+    /**
+     * Logs the pattern with each {@code {}} replaced by the next argument. Nothing is formatted when the level is
+     * not enabled.
+     */
+    public void log(Level level, String pattern, Object arg) {
+        if (isEnabled(level)) {
+            log(level, format(pattern, arg, null, null, 1));
+        }
+    }
+
+    public void log(Level level, String pattern, Object arg1, Object arg2) {
+        if (isEnabled(level)) {
+            log(level, format(pattern, arg1, arg2, null, 2));
+        }
+    }
+
+    public void log(Level level, String pattern, Object... args) {
+        if (isEnabled(level)) {
+            log(level, format(pattern, null, null, args, args.length));
+        }
+    }
+
+    /**
+     * Replaces the {@code {}} in the pattern with the arguments, taken from args when it is not null. Parameters
+     * without an argument are left in place.
+     */
+    private static String format(String pattern, Object arg1, Object arg2, Object[] args, int count) {
+        StringBuilder sb = messageBuilder.get();
+        sb.setLength(0);
+        int start = 0;
+        int param;
+        for (int i = 0; i < count && -1 != (param = pattern.indexOf(PARAMETER, start)); i++) {
+            Object arg = null != args ? args[i] : (0 == i ? arg1 : arg2);
+            sb.append(pattern, start, param).append(arg);
+            start = param + PARAMETER.length();
+        }
+        String message = sb.append(pattern, start, pattern.length()).toString();
+        if (sb.capacity() > MAX_RETAINED_BUILDER) {
+            messageBuilder.remove();
+        }
+        return message;
+    }
+
+    /**
+     * Switches to asynchronous logging with the default {@link AsyncConfig}.
+     */
+    public void enableAsync() {
+        enableAsync(new AsyncConfig());
+    }
+
+    /**
+     * Switches to asynchronous logging: messages are queued and written by a background thread. Messages still
+     * queued when the JVM exits are written by a shutdown hook.
+     */
+    public synchronized void enableAsync(AsyncConfig config) {
+        disableAsync();
+        asyncWriter = new AsyncLogWriter(this, config);
+        shutdownHook = new Thread(this::disableAsync, "ag-logger-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Writes all queued messages and switches back to writing on the calling thread.
+     */
+    public synchronized void disableAsync() {
+        AsyncLogWriter async = asyncWriter;
+        if (null == async) {
+            return;
+        }
+        asyncWriter = null;
+        async.shutdown();
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down
+            }
+        }
+        shutdownHook = null;
+    }
+
+    public boolean isAsync() {
+        return null != asyncWriter;
+    }
+
+    /**
+     * @return the number of messages dropped because the async buffer was full, since async logging was enabled
+     */
+    public long getDroppedCount() {
+        AsyncLogWriter async = asyncWriter;
+        return null == async ? 0 : async.getDroppedCount();
+    }
+
+    /**
+     * Formats and writes one message without flushing.
+     */
+    void write(Level level, long time, String message) {
+        Writer out = writer;
+        if (null == out) {
+            return;
+        }
+        try {
+            String timestamp = getTimestamp(time);
+            synchronized (writeLock) {
+                out.write(level.name());
+                out.write(' ');
+                out.write(timestamp);
+                out.write(": ");
+                out.write(String.valueOf(message));
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write to log: " + e.getMessage());
+        }
+    }
+
+    void flushWriter() {
+        Writer out = writer;
+        if (null == out) {
             return;
         }
         try {
-            writer.write(level.name() + " " + getTimestamp() + ": " + message + "\n");
-            writer.flush();
+            synchronized (writeLock) {
+                out.flush();
+            }
         } catch (IOException e) {
             System.err.println("Failed to write to log: " + e.getMessage());
         }
@@ -77,6 +353,34 @@ public class Logger {
     public void error(String message) { log(Level.ERROR, message); }
     public void fatal(String message) { log(Level.FATAL, message); }
 
+    public void debug(Supplier<String> message) { log(Level.DEBUG, message); }
+    public void info(Supplier<String> message) { log(Level.INFO, message); }
+    public void warn(Supplier<String> message) { log(Level.WARNING, message); }
+    public void error(Supplier<String> message) { log(Level.ERROR, message); }
+    public void fatal(Supplier<String> message) { log(Level.FATAL, message); }
+
+    public void debug(String pattern, Object arg) { log(Level.DEBUG, pattern, arg); }
+    public void info(String pattern, Object arg) { log(Level.INFO, pattern, arg); }
+    public void warn(String pattern, Object arg) { log(Level.WARNING, pattern, arg); }
+    public void error(String pattern, Object arg) { log(Level.ERROR, pattern, arg); }
+    public void fatal(String pattern, Object arg) { log(Level.FATAL, pattern, arg); }
+
+    public void debug(String pattern, Object arg1, Object arg2) { log(Level.DEBUG, pattern, arg1, arg2); }
+    public void info(String pattern, Object arg1, Object arg2) { log(Level.INFO, pattern, arg1, arg2); }
+    public void warn(String pattern, Object arg1, Object arg2) { log(Level.WARNING, pattern, arg1, arg2); }
+    public void error(String pattern, Object arg1, Object arg2) { log(Level.ERROR, pattern, arg1, arg2); }
+    public void fatal(String pattern, Object arg1, Object arg2) { log(Level.FATAL, pattern, arg1, arg2); }
+
+    public void debug(String pattern, Object... args) { log(Level.DEBUG, pattern, args); }
+    public void info(String pattern, Object... args) { log(Level.INFO, pattern, args); }
+    public void warn(String pattern, Object... args) { log(Level.WARNING, pattern, args); }
+    public void error(String pattern, Object... args) { log(Level.ERROR, pattern, args); }
+    public void fatal(String pattern, Object... args) { log(Level.FATAL, pattern, args); }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
     public void setLevel(Level level) {
         this.level = level;
     }
@@ -0,0 +1,278 @@
+package ag.logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes UTF-8 log text into memory-mapped files, so writing a message is a copy into the page cache instead of
+ * a write() call. Files are numbered after the base path ({@code parse.log.0}, {@code parse.log.1}, ...) and the
+ * appender moves on to the next one once a file reaches its size limit or has been open for the roll interval.
+ * Files only roll at the end of a line, so only a line longer than 64K bytes is ever split across two files.
+ * <p>
+ * {@link #flush()} does not need to do anything: written text is in the page cache and survives the process.
+ * Use {@link #force()} to also wait until it is on disk. Closing the appender truncates the current file to the
+ * text that was written.
+ * <p>
+ * Only for Linux and macOS: a file cannot be truncated on Windows while it is still mapped, and Java releases a
+ * mapping only once it is collected, so rolling over or closing would fail there.
+ * <pre>
+ * Logger.addLogger("parse", new MappedFileAppender(Path.of("logs/parse.log"), 64 &lt;&lt; 20, 3_600_000));
+ * </pre>
+ */
+public class MappedFileAppender extends Writer {
+
+    // room past the size limit, so the line that crosses the limit can still be finished in the same file
+    private static final int LINE_SLACK = 1 << 16;
+    private static final byte REPLACEMENT = '?';
+
+    private final Path base;
+    private final long maxFileBytes;
+    private final long rollIntervalMillis;
+
+    private int fileIndex;
+    private Path currentFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long rollAt;
+    // a high surrogate whose low half has not been written yet
+    private char pendingHighSurrogate = 0;
+    private boolean isClosed = false;
+
+    public MappedFileAppender(Path base, long maxFileBytes) throws IOException {
+        this(base, maxFileBytes, 0);
+    }
+
+    /**
+     * @param base the path the numbered files are named after
+     * @param maxFileBytes the size at which a file is rolled over
+     * @param rollIntervalMillis the time after which a file is rolled over, or 0 to only roll by size
+     */
+    public MappedFileAppender(Path base, long maxFileBytes, long rollIntervalMillis) throws IOException {
+        if (maxFileBytes < 1 || maxFileBytes > Integer.MAX_VALUE - LINE_SLACK) {
+            throw new IllegalArgumentException("maxFileBytes must be between 1 and "
+                    + (Integer.MAX_VALUE - LINE_SLACK) + ", not " + maxFileBytes);
+        }
+        if (rollIntervalMillis < 0) {
+            throw new IllegalArgumentException("rollIntervalMillis cannot be negative: " + rollIntervalMillis);
+        }
+        this.base = base;
+        this.maxFileBytes = maxFileBytes;
+        this.rollIntervalMillis = rollIntervalMillis;
+        Path directory = base.toAbsolutePath().getParent();
+        if (null != directory) {
+            Files.createDirectories(directory);
+        }
+        // continue after the files of earlier runs
+        while (Files.exists(numberedFile(fileIndex))) {
+            fileIndex++;
+        }
+        openFile();
+    }
+
+    /**
+     * @return the file that is currently written to
+     */
+    public Path getCurrentFile() {
+        synchronized (lock) {
+            return currentFile;
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            writeChar((char) c);
+        }
+    }
+
+    @Override
+    public void write(char[] chars, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            writeChars(CharBuffer.wrap(chars), off, off + len);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            writeChars(str, off, off + len);
+        }
+    }
+
+    /**
+     * Does not write anything, the text already is in the page cache. Rolls the file if its time is up and the
+     * last line is complete, so quiet logs still roll on time.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            int position = isClosed ? 0 : buffer.position();
+            // a pending high surrogate comes after the line end, so the line is not complete yet
+            if (position > 0 && '\n' == buffer.get(position - 1) && 0 == pendingHighSurrogate && isTimeToRoll()) {
+                roll();
+            }
+        }
+    }
+
+    /**
+     * Waits until the text written so far is stored on disk.
+     */
+    public void force() {
+        synchronized (lock) {
+            if (!isClosed) {
+                buffer.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (!isClosed) {
+                isClosed = true;
+                try {
+                    writePendingSurrogate();
+                } finally {
+                    closeFile();
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies runs of ASCII chars up to the end of a line straight into the mapping, checking the room left once
+     * per run; other chars are encoded one at a time.
+     */
+    private void writeChars(CharSequence chars, int start, int end) throws IOException {
+        int i = start;
+        while (i < end) {
+            if (chars.charAt(i) >= 0x80 || 0 != pendingHighSurrogate) {
+                writeChar(chars.charAt(i++));
+                continue;
+            }
+            ensureCapacity(1);
+            int runEnd = Math.min(end, i + buffer.remaining());
+            char c = 0;
+            while (i < runEnd && (c = chars.charAt(i)) < 0x80) {
+                buffer.put((byte) c);
+                i++;
+                if ('\n' == c) {
+                    break;
+                }
+            }
+            if ('\n' == c && (buffer.position() >= maxFileBytes || isTimeToRoll())) {
+                roll();
+            }
+        }
+    }
+
+    private void writeChar(char c) throws IOException {
+        if (!Character.isLowSurrogate(c)) {
+            // the high surrogate before it has no pair
+            writePendingSurrogate();
+        }
+        if (c < 0x80) {
+            ensureCapacity(1);
+            buffer.put((byte) c);
+            if ('\n' == c && (buffer.position() >= maxFileBytes || isTimeToRoll())) {
+                roll();
+            }
+        } else if (c < 0x800) {
+            ensureCapacity(2);
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c)) {
+            pendingHighSurrogate = c;
+            return;
+        } else if (Character.isLowSurrogate(c)) {
+            if (0 == pendingHighSurrogate) {
+                ensureCapacity(1);
+                buffer.put(REPLACEMENT);
+            } else {
+                int codePoint = Character.toCodePoint(pendingHighSurrogate, c);
+                // written now, a roll for the room must not replace it
+                pendingHighSurrogate = 0;
+                ensureCapacity(4);
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            }
+        } else {
+            ensureCapacity(3);
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+        pendingHighSurrogate = 0;
+    }
+
+    /**
+     * Writes a high surrogate that is still waiting for its low half as a replacement character.
+     */
+    private void writePendingSurrogate() throws IOException {
+        if (0 != pendingHighSurrogate) {
+            pendingHighSurrogate = 0;
+            ensureCapacity(1);
+            buffer.put(REPLACEMENT);
+        }
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            // a line longer than the slack, it has to be split after all
+            roll();
+        }
+    }
+
+    private boolean isTimeToRoll() {
+        return rollIntervalMillis > 0 && System.currentTimeMillis() >= rollAt;
+    }
+
+    private void roll() throws IOException {
+        writePendingSurrogate();
+        closeFile();
+        fileIndex++;
+        openFile();
+    }
+
+    private void openFile() throws IOException {
+        currentFile = numberedFile(fileIndex);
+        channel = FileChannel.open(currentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxFileBytes + LINE_SLACK);
+        rollAt = System.currentTimeMillis() + rollIntervalMillis;
+    }
+
+    /**
+     * Cuts the unwritten end of the mapping off the file. The mapping itself is released once it is collected,
+     * which is why this fails on Windows.
+     */
+    private void closeFile() throws IOException {
+        try {
+            channel.truncate(buffer.position());
+        } finally {
+            channel.close();
+            buffer = null;
+        }
+    }
+
+    private Path numberedFile(int index) {
+        return base.resolveSibling(base.getFileName() + "." + index);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (isClosed) {
+            throw new IOException("MappedFileAppender is closed");
+        }
+    }
+}
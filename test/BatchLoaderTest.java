@@ -0,0 +1,123 @@
+import ag.flatfile.batch.BatchLoader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchLoaderTest {
+
+    @Test
+    public void testLoadDirectory() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            for (int i = 0; i < 40; i++) {
+                Files.writeString(directory.resolve("rows" + i + ".csv"), "id,name\n" + i + ",row " + i + "\n");
+                Files.writeString(directory.resolve("doc" + i + ".json"), "{\"id\": " + i + "}");
+                Files.writeString(directory.resolve("doc" + i + ".xml"), "<doc id=\"" + i + "\"/>");
+            }
+            Files.writeString(directory.resolve("broken.json"), "{\"id\": }");
+            Files.writeString(directory.resolve("notes.txt"), "not loaded");
+
+            List<BatchLoader.Result> results = new ArrayList<>();
+            Thread caller = Thread.currentThread();
+            // budgets far below the batch size, so loading has to wait for handled results
+            long loaded = new BatchLoader(1024, 4).load(directory, result -> {
+                assertSame(caller, Thread.currentThread());
+                results.add(result);
+            });
+
+            assertEquals(120, loaded);
+            assertEquals(121, results.size());
+            long idSum = 0;
+            for (BatchLoader.Result result : results) {
+                if (!result.isSuccess()) {
+                    assertEquals("broken.json", result.getPath().getFileName().toString());
+                    assertThrows(IllegalStateException.class, result::getJson);
+                } else if (BatchLoader.Format.CSV == result.getFormat()) {
+                    idSum += Integer.parseInt(result.getCsv().get(1, "id"));
+                } else if (BatchLoader.Format.XML == result.getFormat()) {
+                    idSum += Integer.parseInt(result.getXml().getAttributes().get("id"));
+                }
+            }
+            assertEquals(2 * (39 * 40 / 2), idSum);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testMissingAndUnsupportedFiles() throws Exception {
+        List<BatchLoader.Result> results = new ArrayList<>();
+        long loaded = new BatchLoader().load(List.of(Path.of("missing.csv"), Path.of("test_res/notes.txt")),
+                results::add);
+        assertEquals(0, loaded);
+        assertEquals(2, results.size());
+        for (BatchLoader.Result result : results) {
+            assertFalse(result.isSuccess());
+            assertNotNull(result.getError());
+        }
+    }
+
+    @Test
+    public void testParserErrorStillProducesResult() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            // nested deep enough to overflow the parser's stack
+            Files.writeString(directory.resolve("deep.json"), "[".repeat(200_000));
+            Files.writeString(directory.resolve("fine.json"), "{\"id\": 1}");
+            List<BatchLoader.Result> results = new ArrayList<>();
+            assertEquals(1, new BatchLoader().load(directory, results::add));
+            assertEquals(2, results.size());
+            for (BatchLoader.Result result : results) {
+                if (!result.isSuccess()) {
+                    assertEquals("deep.json", result.getPath().getFileName().toString());
+                    assertTrue(result.getError() instanceof StackOverflowError);
+                }
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    public void testAbandonedBatchGivesBudgetBack() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            for (int i = 0; i < 1000; i++) {
+                Files.writeString(directory.resolve("rows" + i + ".csv"), "id,name\n" + "1,row\n".repeat(500));
+            }
+            BatchLoader loader = new BatchLoader();
+            assertThrows(IllegalStateException.class, () -> loader.load(directory, result -> {
+                throw new IllegalStateException("handler failed");
+            }));
+            // files that never started loading must not leave the releaser waiting for them
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (isReleaserRunning() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(isReleaserRunning());
+            assertEquals(1000, loader.load(directory, result -> { }));
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    private static boolean isReleaserRunning() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> "ag-batch-release".equals(thread.getName()));
+    }
+
+    private static void deleteAll(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
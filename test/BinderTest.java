@@ -0,0 +1,65 @@
+import ag.flatfile.bind.BindException;
+import ag.flatfile.bind.BindName;
+import ag.flatfile.bind.Binder;
+import ag.flatfile.csv.CsvMap;
+import ag.flatfile.json.JsonObject;
+import ag.flatfile.json.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinderTest {
+
+    record Place(String precision,
+                 @BindName("Latitude") double latitude,
+                 @BindName("City") String city,
+                 @BindName("booleanId") boolean booleanId,
+                 @BindName("People") List<String> people) {
+    }
+
+    static class Row {
+        private String a;
+        private String b;
+        private String column;
+
+        @BindName("d")
+        public void setColumn(String column) {
+            this.column = column;
+        }
+    }
+
+    @Test
+    public void testBindJson() throws Exception {
+        JsonObject json = new JsonParser().parse("test_res/test.json");
+        List<Place> places = Binder.of(Place.class).bindAll(json);
+        assertEquals(2, places.size());
+        assertEquals("SAN FRANCISCO", places.get(0).city());
+        assertEquals(37.7668, places.get(0).latitude());
+        assertTrue(places.get(0).booleanId());
+        assertEquals(List.of("Chase", "Nate", "Cam", "Kurt"), places.get(0).people());
+        assertNull(places.get(1).people());
+    }
+
+    @Test
+    public void testBindCsv() throws Exception {
+        List<Row> rows = Binder.of(Row.class).bindRows(new CsvMap("test_res/test.csv"));
+        assertEquals(2, rows.size());
+        assertEquals("testing a", rows.get(0).a);
+        assertEquals("t\"b\"2", rows.get(1).b);
+        assertEquals("td\n2", rows.get(1).column);
+    }
+
+    @Test
+    public void testReadCsv() throws Exception {
+        List<Place> places = new ArrayList<>();
+        Binder.of(Place.class).readCsv(new StringReader("City,Latitude\nA,1.5\nB,\n"), places::add);
+        assertEquals(2, places.size());
+        assertEquals(1.5, places.get(0).latitude());
+        assertEquals(0.0, places.get(1).latitude());
+        assertThrows(BindException.class, () -> Binder.of(Runnable.class));
+    }
+}
@@ -3,6 +3,9 @@ import ag.logger.Logger;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.NoSuchElementException;
 
@@ -24,4 +27,20 @@ class CSVMapTest {
         assertEquals("t\"b\"2", map.get(2, "b"));
         assertThrows(NoSuchElementException.class, () -> map.get(2, "f"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInMemorySources() throws IOException, ParseException {
+        byte[] bytes = Files.readAllBytes(Path.of("test_res/test.csv"));
+        CsvMap fromBytes = new CsvMap(bytes);
+        assertEquals(3, fromBytes.rows());
+        assertEquals("t\"b\"2", fromBytes.get(2, "b"));
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CsvMap fromBuffer = new CsvMap(buffer);
+        assertEquals("td\n2", fromBuffer.get(2, "d"));
+        assertEquals(0, buffer.position());
+
+        CsvMap fromString = CsvMap.fromString("a,b\n1,2");
+        assertEquals("2", fromString.get(1, "b"));
+    }
+}
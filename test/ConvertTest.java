@@ -0,0 +1,64 @@
+import ag.flatfile.convert.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConvertTest {
+
+    private static final String CSV = "id,name,desc\n1,a,\"x, \"\"y\"\"\"\n2,b,\"multi\nline\"\n";
+
+    @Test
+    public void testCsvJsonRoundTrip() throws Exception {
+        StringWriter json = new StringWriter();
+        try (RecordReader in = new CsvRecordReader(new StringReader(CSV));
+             RecordWriter out = new JsonRecordWriter(json, false)) {
+            assertEquals(2, Converter.convert(in, out));
+        }
+        assertTrue(json.toString().contains("{\"id\":\"2\",\"name\":\"b\",\"desc\":\"multi\\nline\"}"));
+
+        StringWriter csv = new StringWriter();
+        try (RecordReader in = new JsonRecordReader(new StringReader(json.toString()));
+             RecordWriter out = new CsvRecordWriter(csv, List.of("id", "name", "desc"))) {
+            Converter.convert(in, out);
+        }
+        assertEquals(CSV, csv.toString());
+    }
+
+    @Test
+    public void testFieldMapping() throws Exception {
+        StringWriter ndjson = new StringWriter();
+        FieldMapping mapping = new FieldMapping()
+                .map("name", "NAME")
+                .map("id", "id", v -> Integer.parseInt((String) v));
+        try (RecordReader in = new CsvRecordReader(new StringReader(CSV));
+             RecordWriter out = new JsonRecordWriter(ndjson, true)) {
+            Converter.convert(in, mapping, out);
+        }
+        assertEquals("{\"NAME\":\"a\",\"id\":1}\n{\"NAME\":\"b\",\"id\":2}\n", ndjson.toString());
+        Map<String, Object> kept = new FieldMapping().map("id", "ID").keepUnmapped().apply(Map.of("id", "1"));
+        assertEquals(Map.of("ID", "1"), kept);
+    }
+
+    @Test
+    public void testXmlRecords() throws Exception {
+        String xml = "<catalog><meta><item sku='m'/></meta>"
+                + "<item sku='1'><name> first </name><extra><x>skipped</x></extra></item><item sku='2'/></catalog>";
+        StringWriter csv = new StringWriter();
+        try (RecordReader in = new XmlRecordReader(new StringReader(xml), "/catalog/item");
+             RecordWriter out = new CsvRecordWriter(csv)) {
+            Converter.convert(in, out);
+        }
+        assertEquals("sku,name,extra\n1,first,\n2,,\n", csv.toString());
+
+        StringWriter out = new StringWriter();
+        try (RecordWriter writer = new XmlRecordWriter(out, "records", "record")) {
+            writer.write(Map.of("3rd id", "a&b"));
+        }
+        assertTrue(out.toString().endsWith("<records><record><_3rd_id>a&amp;b</_3rd_id></record></records>"));
+    }
+}
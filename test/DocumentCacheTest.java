@@ -0,0 +1,151 @@
+import ag.flatfile.cache.DocumentCache;
+import ag.flatfile.json.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DocumentCacheTest {
+
+    @Test
+    public void testHitsAndReload() throws Exception {
+        Path file = Files.createTempFile("cache", ".json");
+        try {
+            Files.writeString(file, "{\"version\": 1}");
+            DocumentCache cache = new DocumentCache(1 << 20);
+            JsonObject first = cache.getJson(file);
+            assertSame(first, cache.getJson(file));
+            assertEquals(1, cache.getStats().getHits());
+            assertEquals(1, cache.getStats().getMisses());
+            assertThrows(UnsupportedOperationException.class, () -> first.keys().clear());
+
+            Files.writeString(file, "{\"version\": 22}");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            JsonObject second = cache.getJson(file);
+            assertFalse(first == second);
+            assertEquals(22, second.getMember("version"));
+            assertEquals(1, cache.getStats().getSize());
+            assertEquals(2, cache.getStats().getMisses());
+
+            cache.invalidate(file);
+            assertEquals(0, cache.getStats().getSize());
+            assertEquals(0, cache.getStats().getWeight());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testWeightedEviction() throws Exception {
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                Path file = Files.createTempFile("cache", ".csv");
+                Files.writeString(file, "id,name\n" + ("1,some name\n".repeat(50)));
+                files.add(file);
+            }
+            DocumentCache cache = new DocumentCache(1 << 20);
+            cache.getCsv(files.get(0));
+            long oneFile = cache.getStats().getWeight();
+            assertTrue(oneFile > 0);
+
+            cache = new DocumentCache(2 * oneFile);
+            cache.getCsv(files.get(0));
+            cache.getCsv(files.get(1));
+            cache.getCsv(files.get(0));
+            cache.getCsv(files.get(2));
+            // the least recently used file went
+            assertEquals(1, cache.getStats().getEvictions());
+            assertEquals(2, cache.getStats().getSize());
+            cache.getCsv(files.get(0));
+            assertEquals(3, cache.getStats().getMisses());
+            cache.getCsv(files.get(1));
+            assertEquals(4, cache.getStats().getMisses());
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testOversizedDocumentIsNotKept() throws Exception {
+        List<Path> files = new ArrayList<>();
+        try {
+            for (int rows : new int[]{5, 5, 500}) {
+                Path file = Files.createTempFile("cache", ".csv");
+                Files.writeString(file, "id,name\n" + ("1,some name\n".repeat(rows)));
+                files.add(file);
+            }
+            DocumentCache cache = new DocumentCache(1 << 20);
+            cache.getCsv(files.get(0));
+            long smallFile = cache.getStats().getWeight();
+
+            cache = new DocumentCache(4 * smallFile);
+            cache.getCsv(files.get(0));
+            cache.getCsv(files.get(1));
+            assertEquals(501, cache.getCsv(files.get(2)).rows());
+            // the large file is returned but did not push the small ones out
+            assertEquals(0, cache.getStats().getEvictions());
+            assertEquals(2, cache.getStats().getSize());
+            assertEquals(2 * smallFile, cache.getStats().getWeight());
+            cache.getCsv(files.get(2));
+            assertEquals(4, cache.getStats().getMisses());
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        Path file = Files.createTempFile("cache", ".xml");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Files.writeString(file, "<root>" + "<item id=\"1\">text</item>".repeat(20_000) + "</root>");
+            DocumentCache cache = new DocumentCache(64 << 20);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getXml(file);
+                }));
+            }
+            start.countDown();
+            Object first = results.get(0).get();
+            for (Future<Object> result : results) {
+                assertSame(first, result.get());
+            }
+            assertEquals(1, cache.getStats().getMisses());
+            assertEquals(7, cache.getStats().getHits());
+        } finally {
+            executor.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        Path file = Files.createTempFile("cache", ".json");
+        try {
+            Files.writeString(file, "{\"broken\" }");
+            DocumentCache cache = new DocumentCache(1 << 20);
+            assertThrows(RuntimeException.class, () -> cache.getJson(file));
+            assertEquals(1, cache.getStats().getLoadFailures());
+            assertEquals(0, cache.getStats().getSize());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import ag.flatfile.GzipInput;
+import ag.flatfile.csv.CsvMap;
+import ag.flatfile.json.JsonObject;
+import ag.flatfile.json.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GzipInputTest {
+
+    private static byte[] csvRows(int rows) {
+        StringBuilder csv = new StringBuilder("id,name,amount\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(",name ").append(i).append(',').append(i * 7 % 1000).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the data as BGZF style members of at most blockSize bytes, each recording its own size.
+     */
+    private static byte[] bgzf(byte[] data, int blockSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int start = 0; start < data.length; start += blockSize) {
+            int length = Math.min(blockSize, data.length - start);
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(data, start, length);
+            deflater.finish();
+            byte[] deflated = new byte[length + 1024];
+            int deflatedLength = deflater.deflate(deflated);
+            deflater.end();
+            CRC32 crc = new CRC32();
+            crc.update(data, start, length);
+
+            ByteBuffer member = ByteBuffer.allocate(18 + deflatedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+            member.put((byte) 0x1F).put((byte) 0x8B).put((byte) 8).put((byte) 4).putInt(0).put((byte) 0)
+                    .put((byte) 0xFF).putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2)
+                    .putShort((short) (member.capacity() - 1)).put(deflated, 0, deflatedLength)
+                    .putInt((int) crc.getValue()).putInt(length);
+            out.write(member.array(), 0, member.capacity());
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testCompressedFiles() throws Exception {
+        byte[] csv = csvRows(100_000);
+        Path plain = Files.createTempFile("rows", ".csv");
+        Path gzip = Files.createTempFile("rows", ".csv.gz");
+        Path multiMember = Files.createTempFile("rows", ".csv.gz");
+        Path blocked = Files.createTempFile("rows", ".csv.gz");
+        try {
+            Files.write(plain, csv);
+            Files.write(gzip, gzip(csv));
+            int half = csv.length / 2;
+            byte[] first = gzip(Arrays.copyOfRange(csv, 0, half));
+            byte[] second = gzip(Arrays.copyOfRange(csv, half, csv.length));
+            byte[] both = Arrays.copyOf(first, first.length + second.length);
+            System.arraycopy(second, 0, both, first.length, second.length);
+            Files.write(multiMember, both);
+            Files.write(blocked, bgzf(csv, 60_000));
+
+            assertFalse(GzipInput.isGzip(plain));
+            for (Path file : new Path[]{plain, gzip, multiMember, blocked}) {
+                try (InputStream in = GzipInput.open(file)) {
+                    assertTrue(Arrays.equals(csv, in.readAllBytes()), file.toString());
+                }
+                CsvMap map = new CsvMap(file.toString());
+                assertEquals(100_001, map.rows());
+                assertEquals("name 99999", map.get(100_000, "name"));
+            }
+        } finally {
+            Files.delete(plain);
+            Files.delete(gzip);
+            Files.delete(multiMember);
+            Files.delete(blocked);
+        }
+    }
+
+    @Test
+    public void testCompressedStream() throws Exception {
+        byte[] json = "{\"name\": \"compressed\", \"values\": [1, 2, 3]}".getBytes(StandardCharsets.UTF_8);
+        JsonObject parsed = new JsonParser().parse(GzipInput.decompressIfGzip(new ByteArrayInputStream(gzip(json))));
+        assertEquals("compressed", parsed.getMember("name"));
+        try (InputStream in = GzipInput.decompressIfGzip(new ByteArrayInputStream(json))) {
+            assertTrue(Arrays.equals(json, in.readAllBytes()));
+        }
+    }
+
+    @Test
+    public void testCorruptMember() throws Exception {
+        byte[] blocks = bgzf(csvRows(1000), 4096);
+        // flip a byte inside the deflated data of the first member
+        blocks[30] ^= 0x55;
+        Path file = Files.createTempFile("corrupt", ".csv.gz");
+        try {
+            Files.write(file, blocks);
+            assertThrows(IOException.class, () -> {
+                try (InputStream in = GzipInput.open(file)) {
+                    in.readAllBytes();
+                }
+            });
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTruncatedStreamStaysFailed() throws Exception {
+        byte[] gzip = gzip(csvRows(1000));
+        byte[] truncated = Arrays.copyOf(gzip, gzip.length / 2);
+        try (InputStream in = GzipInput.decompress(new ByteArrayInputStream(truncated))) {
+            assertThrows(IOException.class, in::readAllBytes);
+            // a later read must not look like the end of a complete stream
+            assertThrows(IOException.class, in::read);
+            assertThrows(IOException.class, () -> in.read(new byte[16], 0, 16));
+        }
+    }
+
+    @Test
+    public void testMalformedMemberHeader() throws Exception {
+        byte[] blocks = bgzf(csvRows(1000), 4096);
+        // a recorded data size of 2 GiB, more than a member can hold and negative as an int
+        int memberSize = ((blocks[16] & 0xFF) | (blocks[17] & 0xFF) << 8) + 1;
+        ByteBuffer.wrap(blocks).order(ByteOrder.LITTLE_ENDIAN).putInt(memberSize - 4, Integer.MIN_VALUE);
+        // an extra field whose subfield claims more bytes than the field has
+        byte[] truncated = bgzf(csvRows(10), 4096);
+        truncated[14] = 8;
+        Path file = Files.createTempFile("malformed", ".csv.gz");
+        try {
+            Files.write(file, blocks);
+            IOException error = assertThrows(IOException.class, () -> {
+                try (InputStream in = GzipInput.open(file)) {
+                    in.readAllBytes();
+                }
+            });
+            assertTrue(error.getCause() instanceof ZipException);
+            Files.write(file, truncated);
+            assertThrows(ZipException.class, () -> GzipInput.open(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
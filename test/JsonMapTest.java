@@ -4,6 +4,8 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 public class JsonMapTest {
 
     @Test
@@ -29,4 +31,23 @@ public class JsonMapTest {
         }
 
     }
+
+    @Test
+    public void testCompactJson() throws IOException {
+        JsonObject json = new JsonParser().parseString("{\"a\":1,\"b\":[1,2.5,true,null],\"c\":{\"d\":\"x\\\"y\"}}");
+        assertEquals(1, json.getMember("a"));
+        assertEquals(4, json.get("b").size());
+        assertEquals(2.5, json.get("b").getMember(1));
+        assertEquals(true, json.get("b").getMember(2));
+        assertNull(json.get("b").getMember(3));
+        assertEquals("x\"y", json.get("c").getMember("d"));
+    }
+
+    @Test
+    public void testEscapesAndEmptyValues() throws IOException {
+        JsonObject json = new JsonParser().parseString("{\"s\":\"a\\nb\\u0041\\/\",\"a\":[],\"o\":{}}");
+        assertEquals("a\nbA/", json.getMember("s"));
+        assertEquals(0, json.get("a").size());
+        assertTrue(json.get("o").isObject());
+    }
 }
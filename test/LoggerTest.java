@@ -0,0 +1,183 @@
+import ag.logger.Logger;
+import ag.logger.MappedFileAppender;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggerTest {
+
+    private static Logger testLogger(String name, StringWriter out) {
+        Logger log = Logger.addLogger(name, OutputStream.nullOutputStream());
+        log.setWriter(new BufferedWriter(out));
+        return log;
+    }
+
+    private static long countLines(StringWriter out, String prefix) {
+        return out.toString().lines().filter(line -> line.startsWith(prefix)).count();
+    }
+
+    @Test
+    public void testAsyncLogging() throws Exception {
+        StringWriter out = new StringWriter();
+        Logger log = testLogger("async", out);
+        try {
+            log.enableAsync(new Logger.AsyncConfig().capacity(64).flushAfter(16, 10));
+            assertTrue(log.isAsync());
+            Thread[] threads = new Thread[4];
+            for (int i = 0; i < threads.length; i++) {
+                int id = i;
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        log.info("thread " + id + " message " + j);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            log.disableAsync();
+            assertFalse(log.isAsync());
+            // the default policy blocks, so nothing is lost
+            assertEquals(4000, countLines(out, "INFO"));
+        } finally {
+            log.disableAsync();
+        }
+    }
+
+    @Test
+    public void testAsyncDropBelowLevel() throws Exception {
+        StringWriter out = new StringWriter();
+        Logger log = testLogger("drop-below", out);
+        try {
+            log.enableAsync(new Logger.AsyncConfig().capacity(4).dropBelow(Logger.Level.ERROR));
+            for (int i = 0; i < 10000; i++) {
+                log.info("info " + i);
+                log.error("error " + i);
+            }
+            long dropped = log.getDroppedCount();
+            log.disableAsync();
+            assertEquals(10000, countLines(out, "ERROR"));
+            assertEquals(10000, countLines(out, "INFO") + dropped);
+        } finally {
+            log.disableAsync();
+        }
+    }
+
+    @Test
+    public void testAsyncWriteFailures() throws Exception {
+        StringWriter out = new StringWriter() {
+            @Override
+            public void write(String str) {
+                if (str.startsWith("bad")) {
+                    throw new IllegalStateException("cannot write " + str);
+                } else if (str.startsWith("fatal")) {
+                    throw new AssertionError("writer is gone");
+                }
+                super.write(str);
+            }
+        };
+        Logger log = testLogger("failing", out);
+        log.setWriter(out);
+        try {
+            log.enableAsync(new Logger.AsyncConfig().capacity(4));
+            for (int i = 0; i < 10; i++) {
+                log.info(5 == i ? "bad" : "ok " + i);
+            }
+            log.disableAsync();
+            // one failing entry does not stop the others
+            assertEquals(9, out.toString().lines().filter(line -> line.contains("ok")).count());
+
+            log.enableAsync(new Logger.AsyncConfig().capacity(4));
+            log.info("fatal");
+            // the writer died, so the blocking policy must drop instead of waiting forever
+            for (int i = 0; i < 100; i++) {
+                log.info("after " + i);
+            }
+            assertTrue(log.getDroppedCount() > 0);
+        } finally {
+            log.disableAsync();
+        }
+    }
+
+    @Test
+    public void testLazyMessages() {
+        StringWriter out = new StringWriter();
+        Logger log = testLogger("lazy", out);
+        log.setLevel(Logger.Level.INFO);
+        assertFalse(log.isDebugEnabled());
+        log.debug(() -> {
+            throw new AssertionError("disabled messages must not be built");
+        });
+        log.info(() -> "supplied");
+        log.info("{} of {}", 1, "two");
+        log.warn("{} {} {} {}", 1, 2, 3);
+        log.error("no args {}", (Object) null);
+        String[] lines = out.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("INFO (") && lines[0].endsWith("): supplied"));
+        assertTrue(lines[1].endsWith("): 1 of two"));
+        assertTrue(lines[2].endsWith("): 1 2 3 {}"));
+        assertTrue(lines[3].endsWith("): no args null"));
+        assertSame(log, Logger.getLogger("lazy"));
+    }
+
+    @Test
+    public void testMappedFileAppender() throws Exception {
+        Path dir = Files.createTempDirectory("logs");
+        MappedFileAppender appender = new MappedFileAppender(dir.resolve("test.log"), 4096);
+        // the registered logger outlives the test, so it only borrows the appender
+        Logger log = Logger.addLogger("mapped", OutputStream.nullOutputStream());
+        try {
+            log.setWriter(appender);
+            for (int i = 0; i < 1000; i++) {
+                log.info("message {} \u00e9\u2713", i);
+            }
+            appender.close();
+            int lines = 0;
+            int files = 0;
+            for (; Files.exists(dir.resolve("test.log." + files)); files++) {
+                byte[] bytes = Files.readAllBytes(dir.resolve("test.log." + files));
+                String text = new String(bytes, StandardCharsets.UTF_8);
+                assertTrue(bytes.length <= 4096 + 100);
+                assertTrue(text.endsWith("\u00e9\u2713\n"));
+                lines += text.split("\n").length;
+            }
+            assertEquals(1000, lines);
+            assertTrue(files > 1);
+        } finally {
+            log.setWriter(Writer.nullWriter());
+            appender.close();
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFileAppenderUnpairedSurrogates() throws Exception {
+        Path dir = Files.createTempDirectory("logs");
+        try {
+            MappedFileAppender appender = new MappedFileAppender(dir.resolve("test.log"), 4096);
+            appender.write("a\uD83Db \uDE00 \uD83D\uDE00 \uD83D\uD83D\uDE00\n");
+            appender.write("end \uD83D");
+            appender.close();
+            String text = new String(Files.readAllBytes(dir.resolve("test.log.0")), StandardCharsets.UTF_8);
+            assertEquals("a?b ? \uD83D\uDE00 ?\uD83D\uDE00\nend ?", text);
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import ag.flatfile.csv.CsvMap;
+import ag.flatfile.json.JsonParser;
+import ag.flatfile.metrics.ParseMetrics;
+import ag.flatfile.metrics.ParseStats;
+import ag.flatfile.xml.XmlParser;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParseMetricsTest {
+
+    @Test
+    public void testCollectedStats() throws Exception {
+        List<ParseStats> parses = new ArrayList<>();
+        Consumer<ParseStats> listener = parses::add;
+        ParseMetrics.reset();
+        ParseMetrics.enable();
+        ParseMetrics.addListener(listener);
+        try {
+            CsvMap.fromString("a,b\n1,2\n3,4\n");
+            new JsonParser().parseString("{\"a\": [1, 2.5, {\"b\": \"c\"}]}");
+            new XmlParser().parseString("<a x=\"1\"><b>text</b><b/></a>");
+            assertThrows(RuntimeException.class, () -> new JsonParser().parseString("{\"a\" 1}"));
+        } finally {
+            ParseMetrics.removeListener(listener);
+            ParseMetrics.disable();
+        }
+        CsvMap.fromString("a\n1\n");
+
+        assertEquals(4, parses.size());
+        ParseStats csv = parses.get(0);
+        assertEquals(ParseMetrics.Format.CSV, csv.getFormat());
+        assertEquals(12, csv.getChars());
+        assertEquals(3, csv.getRecords());
+        assertEquals(6, csv.getStrings());
+
+        ParseStats json = parses.get(1);
+        assertEquals(3, json.getPeakDepth());
+        // the keys, the string value and the decimal literal
+        assertEquals(4, json.getStrings());
+
+        ParseStats xml = parses.get(2);
+        assertEquals(3, xml.getRecords());
+        assertEquals(2, xml.getPeakDepth());
+        assertEquals(1, xml.getStrings());
+        assertEquals(1, parses.get(3).getErrors());
+
+        ParseStats csvTotals = ParseMetrics.getTotals(ParseMetrics.Format.CSV);
+        assertEquals(1, csvTotals.getParses());
+        assertEquals(3, csvTotals.getRecords());
+        ParseStats jsonTotals = ParseMetrics.getTotals(ParseMetrics.Format.JSON);
+        assertEquals(2, jsonTotals.getParses());
+        assertEquals(1, jsonTotals.getErrors());
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Path file = Files.createTempFile("parse", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("ag.flatfile.Parse").withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            new JsonParser().parseString("[1, 2, 3]");
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if ("ag.flatfile.Parse".equals(event.getEventType().getName())) {
+                    events.add(event);
+                }
+            }
+            assertEquals(1, events.size());
+            assertEquals("JSON", events.get(0).getString("format"));
+            assertEquals(7L, events.get(0).getLong("records"));
+            assertFalse(events.get(0).getBoolean("failed"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
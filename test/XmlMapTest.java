@@ -1,12 +1,117 @@
 import ag.flatfile.xml.Entity;
+import ag.flatfile.xml.XmlParseException;
 import ag.flatfile.xml.XmlParser;
+import ag.flatfile.xml.XmlStreamReader;
+import ag.flatfile.xml.XmlWriter;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 public class XmlMapTest {
 
     @Test
     public void testXmlMap() throws Exception {
         XmlParser parser = new XmlParser();
         Entity root = parser.parse("test_res/test.xml");
+        assertEquals("root", root.getTag());
+        assertEquals(4, root.getChildren().size());
+        Entity attrs = root.getChildren().get(3);
+        assertEquals("h", attrs.getAttributes().get("c"));
+        assertTrue(attrs.getText().startsWith("This is some text inside a tag!"));
+        assertEquals("Some text in a child tag", attrs.getChildren().get(0).getText());
+    }
+
+    @Test
+    public void testEntities() throws Exception {
+        Entity root = new XmlParser().parseString("<a x='1 &amp; 2'>&lt;&#65;<![CDATA[<b>]]></a>");
+        assertEquals("1 & 2", root.getAttributes().get("x"));
+        assertEquals("<A<b>", root.getText());
+        assertThrows(XmlParseException.class, () -> new XmlParser().parseString("<a><b></a>"));
+    }
+
+    @Test
+    public void testStreamReader() throws Exception {
+        XmlStreamReader reader = new XmlStreamReader(new StringReader("<r><i a='1'>x</i><i/></r>"));
+        assertEquals(XmlStreamReader.Event.START_ELEMENT, reader.next());
+        assertEquals(XmlStreamReader.Event.START_ELEMENT, reader.next());
+        assertEquals("1", reader.getAttribute("a"));
+        assertEquals(XmlStreamReader.Event.TEXT, reader.next());
+        assertEquals("x", reader.getText());
+        assertEquals(XmlStreamReader.Event.END_ELEMENT, reader.next());
+        assertEquals(XmlStreamReader.Event.START_ELEMENT, reader.next());
+        assertEquals(XmlStreamReader.Event.END_ELEMENT, reader.next());
+        assertEquals(XmlStreamReader.Event.END_ELEMENT, reader.next());
+        assertEquals(XmlStreamReader.Event.END_DOCUMENT, reader.next());
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        String xml = "<catalog><meta><item sku='skip'/></meta>"
+                + "<item sku='1'><name>a</name></item><other><item/></other><item sku='2'/></catalog>";
+        List<Entity> items = new ArrayList<>();
+        new XmlParser().on("/catalog/item", items::add).scan(xml.getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, items.size());
+        assertEquals("1", items.get(0).getAttributes().get("sku"));
+        assertEquals("a", items.get(0).getChildren().get(0).getText());
+        assertEquals("2", items.get(1).getAttributes().get("sku"));
+
+        List<Entity> any = new ArrayList<>();
+        new XmlParser().on("/catalog/*/item", any::add).scan(xml.getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, any.size());
+    }
+
+    @Test
+    public void testScanOverlappingPaths() throws Exception {
+        byte[] xml = "<r><b><c/></b><d><c/></d></r>".getBytes(StandardCharsets.UTF_8);
+        List<String> seen = new ArrayList<>();
+        new XmlParser()
+                .on("/r/*", entity -> seen.add("* " + entity.getTag()))
+                .on("/r/b/c", entity -> seen.add("b/c " + entity.getTag()))
+                .on("/*/*/c", entity -> seen.add("*/c " + entity.getParent().getTag()))
+                .scan(xml);
+        // the exact path does not hide the wildcard one, and nested matches come before the enclosing element
+        assertEquals(List.of("b/c c", "*/c b", "* b", "*/c d", "* d"), seen);
+
+        List<String> exactOnly = new ArrayList<>();
+        new XmlParser().on("/r/b/c", entity -> exactOnly.add(entity.getTag())).scan(xml);
+        assertEquals(List.of("c"), exactOnly);
+    }
+
+    @Test
+    public void testWriter() throws Exception {
+        StringWriter out = new StringWriter();
+        try (XmlWriter writer = new XmlWriter(out)) {
+            writer.startElement("catalog").attribute("name", "a \"b\" & c");
+            writer.startElement("item").attribute("sku", "1").element("name", "x < y").endElement();
+            writer.startElement("empty");
+        }
+        assertEquals("<catalog name=\"a &quot;b&quot; &amp; c\"><item sku=\"1\"><name>x &lt; y</name></item>"
+                + "<empty/></catalog>", out.toString());
+
+        Entity root = new XmlParser().parseString(out.toString());
+        assertEquals("a \"b\" & c", root.getAttribute("name"));
+        assertEquals("x < y", root.getChildren().get(0).getChildren().get(0).getText());
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        Entity root = new XmlParser().parseString("<catalog><meta><item sku='m'/></meta>"
+                + "<section><item sku='1' type='a'/><group><item sku='2'/></group></section><item sku='1'/></catalog>");
+        assertEquals(1, root.select("/catalog/item").size());
+        assertEquals(2, root.select("//item[@sku='1']").size());
+        assertEquals(4, root.select("//item").size());
+        assertEquals(2, root.select("section//item").size());
+        assertEquals("a", root.selectFirst("//item[@type]").getAttribute("type"));
+        assertEquals(4, root.selectFirst("section").select("//item").size());
+        assertEquals(2, root.selectFirst("section").select(".//item").size());
+        assertEquals(1, root.selectFirst("section").select("./item").size());
+        assertTrue(root.select("//missing").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> root.select("//item[sku]"));
     }
 }